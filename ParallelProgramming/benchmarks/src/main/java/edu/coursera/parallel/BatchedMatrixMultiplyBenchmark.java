@@ -0,0 +1,150 @@
+package edu.coursera.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One size x size left operand against a batch of size x width right
+ * operands: a tiled multiply per product against the batched API, which packs
+ * the left operand once and runs each stage's tiles in one parallel loop.
+ * Scores are per batch. Both run as parallel streams, so they are submitted
+ * to a ForkJoinPool of the requested size. The batched API is only expected
+ * to win when a single product has fewer tiles than the pool has workers;
+ * the class doc of BatchedMatrixMultiply gives the break-even.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class BatchedMatrixMultiplyBenchmark {
+    /**
+     * Parallelism of the fork/join pool.
+     */
+    @Param({"2", "4", "8"})
+    private int threads;
+
+    /**
+     * Rows and columns of the left operand.
+     */
+    @Param({"1024"})
+    private int size;
+
+    /**
+     * Columns of each right operand.
+     */
+    @Param({"16", "64"})
+    private int width;
+
+    /**
+     * Number of products per batch.
+     */
+    @Param({"4", "16", "128"})
+    private int batch;
+
+    /**
+     * Left operand.
+     */
+    private DenseMatrix a;
+    /**
+     * Right operands.
+     */
+    private List<DenseMatrix> bs;
+    /**
+     * Output matrices.
+     */
+    private List<DenseMatrix> cs;
+    /**
+     * Batched multiply with a packed.
+     */
+    private BatchedMatrixMultiply batched;
+
+    /**
+     * Pool running the parallel-stream kernels.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Fill the operands, pack the left operand and start the pool.
+     */
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(threads);
+        final Random rand = new Random(314);
+        a = random(size, size, rand);
+        bs = new ArrayList<>(batch);
+        cs = new ArrayList<>(batch);
+        for (int b = 0; b < batch; b++) {
+            bs.add(random(size, width, rand));
+            cs.add(new DenseMatrix(size, width));
+        }
+        batched = new BatchedMatrixMultiply(a);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Create a matrix of uniform random values.
+     *
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * @param rand Random source
+     * @return Random matrix
+     */
+    private static DenseMatrix random(final int rows, final int cols, final Random rand) {
+        final DenseMatrix m = new DenseMatrix(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                m.set(i, j, rand.nextDouble());
+            }
+        }
+        return m;
+    }
+
+    /**
+     * One parallel tiled multiply per product.
+     * @return Output matrices
+     */
+    @Benchmark
+    public List<DenseMatrix> perProduct() {
+        pool.submit(() -> {
+            for (int b = 0; b < batch; b++) {
+                MatrixMultiply.parTiledMatrixMultiply(a, bs.get(b), cs.get(b));
+            }
+        }).join();
+        return cs;
+    }
+
+    /**
+     * The whole batch through the batched API.
+     * @return Output matrices
+     */
+    @Benchmark
+    public List<DenseMatrix> batched() {
+        pool.submit(() -> batched.multiply(bs, cs)).join();
+        return cs;
+    }
+}
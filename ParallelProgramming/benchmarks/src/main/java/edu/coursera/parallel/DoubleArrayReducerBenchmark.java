@@ -0,0 +1,93 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generic DoubleArrayReducer reductions against the hand-written reciprocal
+ * sum kernel, all on the common pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DoubleArrayReducerBenchmark {
+    /**
+     * Number of elements in the input array.
+     */
+    @Param({"1000000", "16000000", "128000000"})
+    private int size;
+
+    /**
+     * Input array, filled with non-zero values.
+     */
+    private double[] input;
+
+    /**
+     * Number of chunks to split the input into.
+     */
+    private int nChunks;
+
+    /**
+     * Fill the input array.
+     */
+    @Setup
+    public void setUp() {
+        input = new double[size];
+        final Random rand = new Random(314);
+        for (int i = 0; i < size; i++) {
+            input[i] = 1 + rand.nextInt(99);
+        }
+        nChunks = Math.max(1, size / ReciprocalArraySum.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Hand-written recursive reciprocal sum.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double handWrittenReciprocalSum() {
+        return ReciprocalArraySum.parRecursiveArraySum(input, ReciprocalArraySum.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Reciprocal sum through the generic reducer.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double reducerReciprocalSum() {
+        return DoubleArrayReducer.reciprocalSum().reduce(input, nChunks);
+    }
+
+    /**
+     * Sum of squares through the generic reducer.
+     * @return Sum of squares
+     */
+    @Benchmark
+    public double reducerSumOfSquares() {
+        return DoubleArrayReducer.sumOfSquares().reduce(input, nChunks);
+    }
+
+    /**
+     * Maximum through the generic reducer.
+     * @return Largest element
+     */
+    @Benchmark
+    public double reducerMax() {
+        return DoubleArrayReducer.max().reduce(input, nChunks);
+    }
+}
@@ -0,0 +1,95 @@
+package edu.coursera.parallel;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exact most common name against approximate top-10 names as the number of
+ * distinct first names grows. Half the students share ten heavy names, the
+ * other half draw from distinctNames rare ones. Run with -prof gc to compare
+ * allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FirstNameSketchBenchmark {
+    /**
+     * Number of students.
+     */
+    @Param({"2000000"})
+    private int size;
+
+    /**
+     * Number of distinct rare first names.
+     */
+    @Param({"1000", "1000000"})
+    private int distinctNames;
+
+    /**
+     * Student data, 10% of which are currently enrolled.
+     */
+    private Student[] students;
+
+    /**
+     * Analytics instance under test.
+     */
+    private final StudentAnalytics analytics = new StudentAnalytics();
+
+    /**
+     * Generate students, interning names so that equal names share a
+     * String as they would when read through a dictionary.
+     */
+    @Setup
+    public void setUp() {
+        final String[] heavy = new String[10];
+        for (int i = 0; i < heavy.length; i++) {
+            heavy[i] = "Heavy" + i;
+        }
+        final String[] rare = new String[distinctNames];
+        for (int i = 0; i < rare.length; i++) {
+            rare[i] = "Rare" + i;
+        }
+        students = new Student[size];
+        final Random r = new Random(42);
+        for (int s = 0; s < size; s++) {
+            final String name = r.nextBoolean()
+                    ? heavy[Integer.numberOfTrailingZeros(r.nextInt(1 << 10) | (1 << 9))]
+                    : rare[r.nextInt(rare.length)];
+            students[s] = new Student(name, "Smith", 30, 70, r.nextInt(10) == 0);
+        }
+    }
+
+    /**
+     * Exact count of every name.
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String exact() {
+        return analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students);
+    }
+
+    /**
+     * Fixed-memory sketch.
+     * @return Approximate top 10 first names of inactive students
+     */
+    @Benchmark
+    public List<FirstNameSketch.Estimate> approximate() {
+        return analytics.topFirstNamesOfInactiveStudentsApproximate(students, 10);
+    }
+}
@@ -0,0 +1,255 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The parallel cache-blocked multiply in double, in float, and in float with
+ * double accumulation, on the same size x size inputs drawn uniformly from
+ * [-1, 1) and rounded to float, so every kernel sees identical values. The
+ * gflop secondary result is the rate, counting 2 * size^3 operations per
+ * multiply; the floatEps secondary result is the normwise relative error
+ * ||C - R|| / ||R|| of the kernel's output in multiples of the float machine
+ * epsilon, 2^-23, where R is the sequential double product of the same
+ * inputs. All kernels run as parallel streams and are submitted to a
+ * ForkJoinPool of the requested size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FloatMatrixMultiplyBenchmark {
+    /**
+     * Parallelism of the fork/join pool.
+     */
+    @Param({"2", "4", "8"})
+    private int threads;
+
+    /**
+     * Size of each dimension of the square matrices.
+     */
+    @Param({"512", "1024", "2048"})
+    private int size;
+
+    /**
+     * Left operand in double.
+     */
+    private DenseMatrix a;
+    /**
+     * Right operand in double.
+     */
+    private DenseMatrix b;
+    /**
+     * Output matrix in double.
+     */
+    private DenseMatrix c;
+    /**
+     * Left operand in float, row-major.
+     */
+    private float[] fa;
+    /**
+     * Right operand in float, row-major.
+     */
+    private float[] fb;
+    /**
+     * Output matrix in float, row-major.
+     */
+    private float[] fc;
+    /**
+     * Relative error of the double kernel, in float epsilons.
+     */
+    private double doubleError;
+    /**
+     * Relative error of the float kernel, in float epsilons.
+     */
+    private double floatError;
+    /**
+     * Relative error of the float kernel with double accumulation, in
+     * float epsilons.
+     */
+    private double mixedError;
+
+    /**
+     * Floating point operations done, reported by JMH as a rate.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Flops {
+        /**
+         * Billions of floating point operations done in this iteration.
+         */
+        public double gflop;
+
+        /**
+         * Reset the count at the start of each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            gflop = 0;
+        }
+    }
+
+    /**
+     * Accuracy of the kernel being measured, reported by JMH as is.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Accuracy {
+        /**
+         * Normwise relative error of the kernel's output, in float epsilons.
+         */
+        public double floatEps;
+    }
+
+    /**
+     * Pool running the parallel-stream kernels.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Fill the operands, start the pool, and measure the error of each
+     * kernel against the sequential double product.
+     */
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(threads);
+        final Random rand = new Random(314);
+        fa = new float[size * size];
+        fb = new float[size * size];
+        fc = new float[size * size];
+        for (int i = 0; i < fa.length; i++) {
+            fa[i] = rand.nextFloat() * 2 - 1;
+            fb[i] = rand.nextFloat() * 2 - 1;
+        }
+        a = new DenseMatrix(size, size);
+        b = new DenseMatrix(size, size);
+        c = new DenseMatrix(size, size);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                a.set(i, j, fa[i * size + j]);
+                b.set(i, j, fb[i * size + j]);
+            }
+        }
+
+        final DenseMatrix reference = new DenseMatrix(size, size);
+        MatrixMultiply.seqMatrixMultiply(a, b, reference);
+        doubleTiled(new Flops(), new Accuracy());
+        doubleError = error(reference, c);
+        floatTiled(new Flops(), new Accuracy());
+        floatError = error(reference, fc);
+        mixedTiled(new Flops(), new Accuracy());
+        mixedError = error(reference, fc);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Normwise relative error of a double output.
+     *
+     * @param reference Reference product
+     * @param output Output to measure
+     * @return ||output - reference|| / ||reference||, Frobenius norms, in
+     *         float epsilons
+     */
+    private double error(final DenseMatrix reference, final DenseMatrix output) {
+        double diff = 0.0;
+        double norm = 0.0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                final double r = reference.get(i, j);
+                final double d = output.get(i, j) - r;
+                diff += d * d;
+                norm += r * r;
+            }
+        }
+        return Math.sqrt(diff / norm) / Math.ulp(1.0f);
+    }
+
+    /**
+     * Normwise relative error of a float output.
+     *
+     * @param reference Reference product
+     * @param output Row-major output to measure
+     * @return ||output - reference|| / ||reference||, Frobenius norms, in
+     *         float epsilons
+     */
+    private double error(final DenseMatrix reference, final float[] output) {
+        double diff = 0.0;
+        double norm = 0.0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                final double r = reference.get(i, j);
+                final double d = output[i * size + j] - r;
+                diff += d * d;
+                norm += r * r;
+            }
+        }
+        return Math.sqrt(diff / norm) / Math.ulp(1.0f);
+    }
+
+    /**
+     * Parallel cache-blocked multiply in double.
+     * @param flops Operation counter
+     * @param accuracy Error report
+     * @return Output matrix
+     */
+    @Benchmark
+    public DenseMatrix doubleTiled(final Flops flops, final Accuracy accuracy) {
+        pool.submit(() -> MatrixMultiply.parTiledMatrixMultiply(a, b, c)).join();
+        flops.gflop += 2e-9 * size * size * size;
+        accuracy.floatEps = doubleError;
+        return c;
+    }
+
+    /**
+     * Parallel cache-blocked multiply in float, accumulating in float.
+     * @param flops Operation counter
+     * @param accuracy Error report
+     * @return Output matrix
+     */
+    @Benchmark
+    public float[] floatTiled(final Flops flops, final Accuracy accuracy) {
+        pool.submit(() -> FloatMatrixMultiply.parMatrixMultiply(fa, fb, fc, size, size, size, false)).join();
+        flops.gflop += 2e-9 * size * size * size;
+        accuracy.floatEps = floatError;
+        return fc;
+    }
+
+    /**
+     * Parallel cache-blocked multiply in float, accumulating in double.
+     * @param flops Operation counter
+     * @param accuracy Error report
+     * @return Output matrix
+     */
+    @Benchmark
+    public float[] mixedTiled(final Flops flops, final Accuracy accuracy) {
+        pool.submit(() -> FloatMatrixMultiply.parMatrixMultiply(fa, fb, fc, size, size, size, true)).join();
+        flops.gflop += 2e-9 * size * size * size;
+        accuracy.floatEps = mixedError;
+        return fc;
+    }
+}
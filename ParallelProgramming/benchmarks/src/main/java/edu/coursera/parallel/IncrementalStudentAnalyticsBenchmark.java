@@ -0,0 +1,111 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of keeping the three StudentAnalytics answers current after a single
+ * student changes: an incremental update followed by O(1) reads, against a
+ * fused recompute over every student. Writer scaling of the incremental path
+ * is measured by running with several JMH threads, e.g.
+ * java -jar target/benchmarks.jar IncrementalStudentAnalytics.churn -t 4.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class IncrementalStudentAnalyticsBenchmark {
+    /**
+     * First names students are drawn from.
+     */
+    private static final String[] FIRST_NAMES = {"Sanjay", "Yunming", "John", "Vivek", "Shams", "Max"};
+
+    /**
+     * Number of students.
+     */
+    @Param({"2000000"})
+    private int size;
+
+    /**
+     * Student data, 30% of which are currently enrolled.
+     */
+    private Student[] students;
+
+    /**
+     * Incrementally maintained view of the students.
+     */
+    private IncrementalStudentAnalytics view;
+
+    /**
+     * Fused engine with all three queries registered.
+     */
+    private final FusedStudentAnalytics fused = new FusedStudentAnalytics();
+
+    /**
+     * Generate students, load the view and register the fused queries.
+     */
+    @Setup
+    public void setUp() {
+        students = new Student[size];
+        final Random r = new Random(123);
+        for (int s = 0; s < size; s++) {
+            students[s] = randomStudent(r, s < size * 3 / 10);
+        }
+        view = new IncrementalStudentAnalytics(students);
+        fused.register(StudentAggregation.averageAgeOfEnrolledStudents());
+        fused.register(StudentAggregation.mostCommonFirstNameOfInactiveStudents());
+        fused.register(StudentAggregation.countNumberOfFailedStudentsOlderThan20());
+    }
+
+    /**
+     * Insert a fresh student, read all three answers, then delete it again,
+     * so the view's contents do not drift over the run.
+     * @param bh Sink for the answers
+     */
+    @Benchmark
+    public void churn(final Blackhole bh) {
+        final Student s = randomStudent(ThreadLocalRandom.current(), ThreadLocalRandom.current().nextBoolean());
+        view.insert(s);
+        bh.consume(view.averageAgeOfEnrolledStudents());
+        bh.consume(view.mostCommonFirstNameOfInactiveStudents());
+        bh.consume(view.countNumberOfFailedStudentsOlderThan20());
+        view.delete(s);
+    }
+
+    /**
+     * Recompute all three answers from scratch in one fused pass, which is
+     * what every change costs without the incremental view.
+     * @return Answers to all three queries
+     */
+    @Benchmark
+    public FusedStudentAnalytics.Result recompute() {
+        return fused.run(students);
+    }
+
+    /**
+     * Draw a student.
+     * @param r Source of randomness
+     * @param current Whether the student is enrolled
+     * @return New student
+     */
+    private static Student randomStudent(final Random r, final boolean current) {
+        return new Student(FIRST_NAMES[r.nextInt(FIRST_NAMES.length)], "Smith",
+                r.nextDouble() * 100.0, 1 + r.nextInt(100), current);
+    }
+}
@@ -0,0 +1,110 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.rice.pcdp.runtime.Runtime;
+
+/**
+ * MatrixMultiply across PCDP worker counts and matrix sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MatrixMultiplyBenchmark {
+    /**
+     * Number of PCDP worker threads. PCDP needs at least two to make
+     * progress through nested finish scopes.
+     */
+    @Param({"2", "4", "8"})
+    private int threads;
+
+    /**
+     * Size of each dimension of the square matrices.
+     */
+    @Param({"256", "512", "1024"})
+    private int size;
+
+    /**
+     * Left operand.
+     */
+    private double[][] a;
+    /**
+     * Right operand.
+     */
+    private double[][] b;
+    /**
+     * Output matrix.
+     */
+    private double[][] c;
+
+    /**
+     * Product cache large enough for every size, warmed by the first call.
+     */
+    private final MatrixProductCache cache = new MatrixProductCache(1L << 30);
+
+    /**
+     * Fill the operands and resize the PCDP runtime.
+     * @throws InterruptedException If resizing the runtime is interrupted
+     */
+    @Setup
+    public void setUp() throws InterruptedException {
+        final Random rand = new Random(314);
+        a = new double[size][size];
+        b = new double[size][size];
+        c = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                a[i][j] = rand.nextInt(100);
+                b[i][j] = rand.nextInt(100);
+            }
+        }
+        Runtime.resizeWorkerThreads(threads);
+    }
+
+    /**
+     * Sequential multiply.
+     * @return Output matrix
+     */
+    @Benchmark
+    public double[][] sequential() {
+        MatrixMultiply.seqMatrixMultiply(a, b, c, size);
+        return c;
+    }
+
+    /**
+     * Parallel multiply.
+     * @return Output matrix
+     */
+    @Benchmark
+    public double[][] parallel() {
+        MatrixMultiply.parMatrixMultiply(a, b, c, size);
+        return c;
+    }
+
+    /**
+     * Repeated product through the fingerprinting cache, which after the
+     * first call costs two fingerprints and a copy.
+     * @return Output matrix
+     */
+    @Benchmark
+    public double[][] cached() {
+        cache.multiply(a, b, c, size);
+        return c;
+    }
+}
@@ -0,0 +1,171 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.rice.pcdp.runtime.Runtime;
+
+/**
+ * Matrix multiply kernels in GFLOP/s, counting 2 * size^3 floating point
+ * operations per multiply. The gflop secondary result is the rate; the
+ * primary ops/s score is multiplies per second. The 4k-8k sizes used in
+ * production need a bigger heap and patience with the naive kernel, e.g.
+ * java -jar target/benchmarks.jar MatrixMultiplyGflops.tiled -p size=4096
+ * -jvmArgs -Xmx8g. The tiled kernels run as parallel streams and are
+ * submitted to a ForkJoinPool of the requested size; the naive kernel runs
+ * on PCDP resized to the same number of workers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MatrixMultiplyGflopsBenchmark {
+    /**
+     * Number of PCDP worker threads. PCDP needs at least two to make
+     * progress through nested finish scopes.
+     */
+    @Param({"2", "4", "8"})
+    private int threads;
+
+    /**
+     * Size of each dimension of the square matrices.
+     */
+    @Param({"512", "1024", "2048"})
+    private int size;
+
+    /**
+     * Left operand.
+     */
+    private double[][] a;
+    /**
+     * Right operand.
+     */
+    private double[][] b;
+    /**
+     * Output matrix.
+     */
+    private double[][] c;
+    /**
+     * Left operand in flat storage.
+     */
+    private DenseMatrix flatA;
+    /**
+     * Right operand in flat storage.
+     */
+    private DenseMatrix flatB;
+    /**
+     * Output matrix in flat storage.
+     */
+    private DenseMatrix flatC;
+
+    /**
+     * Floating point operations done, reported by JMH as a rate.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Flops {
+        /**
+         * Billions of floating point operations done in this iteration.
+         */
+        public double gflop;
+
+        /**
+         * Reset the count at the start of each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            gflop = 0;
+        }
+    }
+
+    /**
+     * Pool running the parallel-stream kernels.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Fill the operands and resize the PCDP runtime.
+     * @throws InterruptedException If resizing the runtime is interrupted
+     */
+    @Setup
+    public void setUp() throws InterruptedException {
+        final Random rand = new Random(314);
+        a = new double[size][size];
+        b = new double[size][size];
+        c = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                a[i][j] = rand.nextInt(100);
+                b[i][j] = rand.nextInt(100);
+            }
+        }
+        flatA = DenseMatrix.copyOf(a, size, size);
+        flatB = DenseMatrix.copyOf(b, size, size);
+        flatC = new DenseMatrix(size, size);
+        Runtime.resizeWorkerThreads(threads);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Sequential naive i-j-k multiply.
+     * @param flops Operation counter
+     * @return Output matrix
+     */
+    @Benchmark
+    public double[][] sequential(final Flops flops) {
+        MatrixMultiply.seqMatrixMultiply(a, b, c, size);
+        flops.gflop += 2e-9 * size * size * size;
+        return c;
+    }
+
+    /**
+     * Parallel cache-blocked multiply.
+     * @param flops Operation counter
+     * @return Output matrix
+     */
+    @Benchmark
+    public double[][] tiled(final Flops flops) {
+        pool.submit(() -> MatrixMultiply.parTiledMatrixMultiply(a, b, c, size)).join();
+        flops.gflop += 2e-9 * size * size * size;
+        return c;
+    }
+
+    /**
+     * Parallel cache-blocked multiply on flat matrices, with no copies in or
+     * out of double[][].
+     * @param flops Operation counter
+     * @return Output matrix
+     */
+    @Benchmark
+    public DenseMatrix tiledFlat(final Flops flops) {
+        pool.submit(() -> MatrixMultiply.parTiledMatrixMultiply(flatA, flatB, flatC)).join();
+        flops.gflop += 2e-9 * size * size * size;
+        return flatC;
+    }
+}
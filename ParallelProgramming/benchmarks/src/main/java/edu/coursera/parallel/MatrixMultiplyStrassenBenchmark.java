@@ -0,0 +1,133 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recursive fork/join matrix multiply across Strassen cutoffs, to find the
+ * crossover below which Strassen steps stop paying for their extra additions
+ * and temporaries. The gflop secondary result counts the nominal 2 * size^3
+ * operations of a classical multiply, so it is comparable across cutoffs;
+ * strassenCutoff=2147483647 disables Strassen and is the classical
+ * recursive baseline. The crossover is the smallest cutoff whose rate still
+ * beats the baseline at the next size up, e.g.
+ * java -jar target/benchmarks.jar MatrixMultiplyStrassen -p size=2048,4096
+ * -jvmArgs -Xmx8g.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MatrixMultiplyStrassenBenchmark {
+    /**
+     * Parallelism of the fork/join pool.
+     */
+    @Param({"1", "4", "8"})
+    private int threads;
+
+    /**
+     * Size of each dimension of the square matrices.
+     */
+    @Param({"512", "1024", "2048"})
+    private int size;
+
+    /**
+     * Smallest size that takes a Strassen step.
+     */
+    @Param({"256", "512", "1024", "2147483647"})
+    private int strassenCutoff;
+
+    /**
+     * Left operand.
+     */
+    private DenseMatrix a;
+    /**
+     * Right operand.
+     */
+    private DenseMatrix b;
+    /**
+     * Output matrix.
+     */
+    private DenseMatrix c;
+    /**
+     * Pool running the tasks.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Floating point operations done, reported by JMH as a rate.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Flops {
+        /**
+         * Billions of nominal floating point operations done in this
+         * iteration.
+         */
+        public double gflop;
+
+        /**
+         * Reset the count at the start of each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            gflop = 0;
+        }
+    }
+
+    /**
+     * Fill the operands and start the pool.
+     */
+    @Setup
+    public void setUp() {
+        final Random rand = new Random(314);
+        a = new DenseMatrix(size, size);
+        b = new DenseMatrix(size, size);
+        c = new DenseMatrix(size, size);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                a.set(i, j, rand.nextDouble());
+                b.set(i, j, rand.nextDouble());
+            }
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Stop the pool.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Recursive quadrant multiply with Strassen steps from the cutoff up.
+     * @param flops Operation counter
+     * @return Output matrix
+     */
+    @Benchmark
+    public DenseMatrix recursive(final Flops flops) {
+        MatrixMultiply.parRecursiveMatrixMultiply(a, b, c, MatrixMultiply.DEFAULT_LEAF_SIZE, strassenCutoff, pool);
+        flops.gflop += 2e-9 * size * size * size;
+        return c;
+    }
+}
@@ -0,0 +1,119 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * OneDimAveragingPhaser across task counts and problem sizes, for a fixed
+ * number of iterations per invocation. The red-black variant converges in
+ * about half as many iterations as the others, so equal times favour it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class OneDimAveragingPhaserBenchmark {
+    /**
+     * Number of threads/tasks.
+     */
+    @Param({"1", "2", "4", "8", "16", "64"})
+    private int threads;
+
+    /**
+     * Number of interior points.
+     */
+    @Param({"65536", "1048576", "4194304"})
+    private int size;
+
+    /**
+     * Number of iterations per invocation.
+     */
+    @Param({"1000"})
+    private int iterations;
+
+    /**
+     * Output array.
+     */
+    private double[] myNew;
+    /**
+     * Input array.
+     */
+    private double[] myVal;
+
+    /**
+     * Reset both arrays to the initial condition before every invocation.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() {
+        myNew = new double[size + 2];
+        myVal = new double[size + 2];
+        myNew[size + 1] = 1.0;
+        myVal[size + 1] = 1.0;
+    }
+
+    /**
+     * Sequential reference.
+     * @return Output array
+     */
+    @Benchmark
+    public double[] sequential() {
+        OneDimAveragingPhaser.runSequential(iterations, myNew, myVal, size);
+        return myNew;
+    }
+
+    /**
+     * Phaser used as a plain barrier.
+     * @return Output array
+     */
+    @Benchmark
+    public double[] barrier() {
+        OneDimAveragingPhaser.runParallelBarrier(iterations, myNew, myVal, size, threads);
+        return myNew;
+    }
+
+    /**
+     * Phaser used as a fuzzy barrier.
+     * @return Output array
+     */
+    @Benchmark
+    public double[] fuzzyBarrier() {
+        OneDimAveragingPhaser.runParallelFuzzyBarrier(iterations, myNew, myVal, size, threads);
+        return myNew;
+    }
+
+    /**
+     * In-place red-black relaxation on myVal alone, with two fuzzy phases
+     * per iteration.
+     * @return Output array
+     */
+    @Benchmark
+    public double[] redBlack() {
+        OneDimAveragingPhaser.runParallelRedBlack(iterations, myVal, size, threads);
+        return myVal;
+    }
+
+    /**
+     * Volatile per-task counters, each task waiting only for its two
+     * neighbours.
+     * @return Output array
+     */
+    @Benchmark
+    public double[] pointToPoint() {
+        OneDimAveragingPhaser.runParallelPointToPoint(iterations, myNew, myVal, size, threads);
+        return myNew;
+    }
+}
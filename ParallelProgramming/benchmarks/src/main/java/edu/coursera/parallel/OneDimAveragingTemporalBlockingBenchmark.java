@@ -0,0 +1,120 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stencil iterations per second of the temporally blocked averaging against
+ * the fuzzy barrier, across task counts and exchange intervals k. The
+ * iterations secondary result is the rate; the primary ops/s score is runs
+ * of the given number of iterations per second. The fuzzy barrier does not
+ * depend on k and is repeated for every value of it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class OneDimAveragingTemporalBlockingBenchmark {
+    /**
+     * Number of threads/tasks.
+     */
+    @Param({"1", "2", "4", "8", "16"})
+    private int threads;
+
+    /**
+     * Number of interior points.
+     */
+    @Param({"65536", "1048576"})
+    private int size;
+
+    /**
+     * Number of iterations per invocation.
+     */
+    @Param({"1000"})
+    private int iterations;
+
+    /**
+     * Iterations between halo exchanges.
+     */
+    @Param({"1", "4", "16", "64"})
+    private int k;
+
+    /**
+     * Output array.
+     */
+    private double[] myNew;
+    /**
+     * Input array.
+     */
+    private double[] myVal;
+
+    /**
+     * Stencil iterations done, reported by JMH as a rate.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Iterations {
+        /**
+         * Iterations done in this JMH iteration.
+         */
+        public long iterations;
+
+        /**
+         * Reset the count at the start of each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            iterations = 0;
+        }
+    }
+
+    /**
+     * Reset both arrays to the initial condition before every invocation.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() {
+        myNew = new double[size + 2];
+        myVal = new double[size + 2];
+        myNew[size + 1] = 1.0;
+        myVal[size + 1] = 1.0;
+    }
+
+    /**
+     * Phaser used as a fuzzy barrier once per iteration.
+     * @param counter Iteration counter
+     * @return Output array
+     */
+    @Benchmark
+    public double[] fuzzyBarrier(final Iterations counter) {
+        OneDimAveragingPhaser.runParallelFuzzyBarrier(iterations, myNew, myVal, size, threads);
+        counter.iterations += iterations;
+        return myNew;
+    }
+
+    /**
+     * Private chunks with k-wide halos, exchanged every k iterations.
+     * @param counter Iteration counter
+     * @return Output array
+     */
+    @Benchmark
+    public double[] temporalBlocking(final Iterations counter) {
+        OneDimAveragingPhaser.runParallelTemporalBlocking(iterations, myNew, myVal, size, threads, k);
+        counter.iterations += iterations;
+        return myNew;
+    }
+}
@@ -0,0 +1,103 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ReciprocalArraySum across pool sizes and input sizes. The sequential
+ * baseline does not depend on the pool size and lives in
+ * ReciprocalArraySumKernelBenchmark.singleAccumulator; run that with
+ * -bm avgt -tu ms to compare it with these scores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ReciprocalArraySumBenchmark {
+    /**
+     * Parallelism of the pool the parallel variants run on.
+     */
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    /**
+     * Number of elements in the input array.
+     */
+    @Param({"1000000", "16000000", "128000000"})
+    private int size;
+
+    /**
+     * Input array, filled with non-zero values.
+     */
+    private double[] input;
+
+    /**
+     * Pool with the requested parallelism.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Fill the input array and start the pool.
+     */
+    @Setup
+    public void setUp() {
+        input = new double[size];
+        final Random rand = new Random(314);
+        for (int i = 0; i < size; i++) {
+            input[i] = 1 + rand.nextInt(99);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Recursive fork/join sum at the default threshold.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double recursive() {
+        return ReciprocalArraySum.parRecursiveArraySum(input, ReciprocalArraySum.DEFAULT_THRESHOLD, pool);
+    }
+
+    /**
+     * Recursive sum with one leaf per thread, as parManyTaskArraySum does.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double manyTask() {
+        final int threshold = (size + threads - 1) / threads;
+        return ReciprocalArraySum.parRecursiveArraySum(input, threshold, pool);
+    }
+
+    /**
+     * Deterministic compensated sum.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double deterministic() {
+        return ReciprocalArraySum.parDeterministicArraySum(input, pool);
+    }
+}
@@ -0,0 +1,72 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-threaded throughput of the reciprocal sum loops, i.e. what one core
+ * achieves per array. Divide ops/s by size to get elements/s. The 1B element
+ * case needs roughly 8 GB of heap, e.g.
+ * java -jar target/benchmarks.jar ReciprocalArraySumKernel -p size=1000000000
+ * -jvmArgs -Xmx10g.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ReciprocalArraySumKernelBenchmark {
+    /**
+     * Number of elements in the input array.
+     */
+    @Param({"1000000", "16000000", "128000000"})
+    private int size;
+
+    /**
+     * Input array, filled with non-zero values.
+     */
+    private double[] input;
+
+    /**
+     * Fill the input array.
+     */
+    @Setup
+    public void setUp() {
+        input = new double[size];
+        final Random rand = new Random(314);
+        for (int i = 0; i < size; i++) {
+            input[i] = 1 + rand.nextInt(99);
+        }
+    }
+
+    /**
+     * The original single-accumulator loop.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double singleAccumulator() {
+        return ReciprocalArraySum.seqArraySum(input);
+    }
+
+    /**
+     * The unrolled four-accumulator kernel.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double unrolledKernel() {
+        return ReciprocalArraySum.seqUnrolledArraySum(input);
+    }
+}
@@ -0,0 +1,69 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the deterministic compensated reduction relative to the plain
+ * recursive reduction, both on the common pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ReciprocalArraySumReductionBenchmark {
+    /**
+     * Number of elements in the input array.
+     */
+    @Param({"1000000", "16000000", "128000000"})
+    private int size;
+
+    /**
+     * Input array, filled with non-zero values.
+     */
+    private double[] input;
+
+    /**
+     * Fill the input array.
+     */
+    @Setup
+    public void setUp() {
+        input = new double[size];
+        final Random rand = new Random(314);
+        for (int i = 0; i < size; i++) {
+            input[i] = 1 + rand.nextInt(99);
+        }
+    }
+
+    /**
+     * Plain recursive reduction.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double plain() {
+        return ReciprocalArraySum.parRecursiveArraySum(input, ReciprocalArraySum.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Kahan leaves with a fixed-shape combine tree.
+     * @return Reciprocal sum
+     */
+    @Benchmark
+    public double deterministic() {
+        return ReciprocalArraySum.parDeterministicArraySum(input);
+    }
+}
@@ -0,0 +1,171 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sparse products against the dense tiled multiply on the same operands.
+ * Rows have skewed lengths: one row in 64 is twenty times denser than the
+ * others, which is what partitioning by non-zeros rather than by rows is
+ * for. All kernels run as parallel streams, so they are submitted to a
+ * ForkJoinPool of the requested size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SparseMatrixMultiplyBenchmark {
+    /**
+     * Parallelism of the fork/join pool.
+     */
+    @Param({"2", "4", "8"})
+    private int threads;
+
+    /**
+     * Size of each dimension of the square matrices.
+     */
+    @Param({"2048"})
+    private int size;
+
+    /**
+     * Average fraction of non-zero elements.
+     */
+    @Param({"0.001", "0.01"})
+    private double density;
+
+    /**
+     * Sparse left operand.
+     */
+    private CsrMatrix sparseA;
+    /**
+     * Sparse right operand.
+     */
+    private CsrMatrix sparseB;
+    /**
+     * Dense copy of the left operand.
+     */
+    private DenseMatrix denseA;
+    /**
+     * Dense copy of the right operand.
+     */
+    private DenseMatrix denseB;
+    /**
+     * Dense output matrix.
+     */
+    private DenseMatrix denseC;
+    /**
+     * Input vector.
+     */
+    private double[] x;
+    /**
+     * Output vector.
+     */
+    private double[] y;
+    /**
+     * Pool running the sparse kernels.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Build the operands and start the pool.
+     */
+    @Setup
+    public void setUp() {
+        final Random rand = new Random(314);
+        denseA = randomSparse(rand);
+        denseB = randomSparse(rand);
+        denseC = new DenseMatrix(size, size);
+        sparseA = CsrMatrix.fromDense(denseA);
+        sparseB = CsrMatrix.fromDense(denseB);
+        x = new double[size];
+        y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = rand.nextDouble();
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Create a dense matrix with skewed row densities averaging the density
+     * parameter.
+     *
+     * @param rand Random source
+     * @return Mostly zero dense matrix
+     */
+    private DenseMatrix randomSparse(final Random rand) {
+        final DenseMatrix M = new DenseMatrix(size, size);
+        final double light = density * 64 / 83;
+        for (int i = 0; i < size; i++) {
+            final double rowDensity = i % 64 == 0 ? 20 * light : light;
+            for (int j = 0; j < size; j++) {
+                if (rand.nextDouble() < rowDensity) {
+                    M.set(i, j, rand.nextDouble());
+                }
+            }
+        }
+        return M;
+    }
+
+    /**
+     * Sparse matrix-vector multiply.
+     * @return Output vector
+     */
+    @Benchmark
+    public double[] spmv() {
+        pool.submit(() -> MatrixMultiply.parSparseMatrixVectorMultiply(sparseA, x, y)).join();
+        return y;
+    }
+
+    /**
+     * Sparse matrix times dense matrix.
+     * @return Output matrix
+     */
+    @Benchmark
+    public DenseMatrix spmm() {
+        pool.submit(() -> MatrixMultiply.parSparseMatrixMultiply(sparseA, denseB, denseC)).join();
+        return denseC;
+    }
+
+    /**
+     * Sparse matrix times sparse matrix.
+     * @return Sparse product
+     */
+    @Benchmark
+    public CsrMatrix spgemm() {
+        return pool.submit(() -> MatrixMultiply.parSparseMatrixMultiply(sparseA, sparseB)).join();
+    }
+
+    /**
+     * Dense tiled multiply of the same operands, zeros included.
+     * @return Output matrix
+     */
+    @Benchmark
+    public DenseMatrix denseTiled() {
+        pool.submit(() -> MatrixMultiply.parTiledMatrixMultiply(denseA, denseB, denseC)).join();
+        return denseC;
+    }
+}
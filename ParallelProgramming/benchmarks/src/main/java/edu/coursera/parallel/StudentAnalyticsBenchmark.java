@@ -0,0 +1,181 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * StudentAnalytics queries, imperative and parallel stream, across pool sizes
+ * and numbers of students. Parallel streams started from inside a
+ * ForkJoinPool task run on that pool, which is how the thread count is set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StudentAnalyticsBenchmark {
+    /**
+     * First names students are drawn from.
+     */
+    private static final String[] FIRST_NAMES = {"Sanjay", "Yunming", "John", "Vivek", "Shams", "Max"};
+    /**
+     * Last names students are drawn from.
+     */
+    private static final String[] LAST_NAMES = {"Chatterjee", "Zhang", "Smith", "Sarkar", "Imam", "Grossman"};
+
+    /**
+     * Parallelism of the pool the parallel streams run on.
+     */
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    /**
+     * Number of students.
+     */
+    @Param({"100000", "2000000", "10000000"})
+    private int size;
+
+    /**
+     * Student data, 30% of which are currently enrolled.
+     */
+    private Student[] students;
+
+    /**
+     * Pool with the requested parallelism.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Analytics instance under test.
+     */
+    private final StudentAnalytics analytics = new StudentAnalytics();
+
+    /**
+     * Fused engine with all three queries registered.
+     */
+    private final FusedStudentAnalytics fused = new FusedStudentAnalytics();
+
+    /**
+     * Register the three queries with the fused engine.
+     */
+    {
+        fused.register(StudentAggregation.averageAgeOfEnrolledStudents());
+        fused.register(StudentAggregation.mostCommonFirstNameOfInactiveStudents());
+        fused.register(StudentAggregation.countNumberOfFailedStudentsOlderThan20());
+    }
+
+    /**
+     * Generate students and start the pool.
+     */
+    @Setup
+    public void setUp() {
+        students = new Student[size];
+        final Random r = new Random(123);
+        for (int s = 0; s < size; s++) {
+            students[s] = new Student(FIRST_NAMES[r.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[r.nextInt(LAST_NAMES.length)], r.nextDouble() * 100.0,
+                    1 + r.nextInt(100), s < size * 3 / 10);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Imperative average age.
+     * @return Average age of enrolled students
+     */
+    @Benchmark
+    public double averageAgeImperative() {
+        return analytics.averageAgeOfEnrolledStudentsImperative(students);
+    }
+
+    /**
+     * Parallel stream average age.
+     * @return Average age of enrolled students
+     */
+    @Benchmark
+    public double averageAgeParallelStream() {
+        return pool.submit(() -> analytics.averageAgeOfEnrolledStudentsParallelStream(students)).join();
+    }
+
+    /**
+     * Imperative most common name.
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String mostCommonFirstNameImperative() {
+        return analytics.mostCommonFirstNameOfInactiveStudentsImperative(students);
+    }
+
+    /**
+     * Parallel stream most common name.
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String mostCommonFirstNameParallelStream() {
+        return pool.submit(() -> analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students)).join();
+    }
+
+    /**
+     * Imperative failed count.
+     * @return Number of failed students older than 20
+     */
+    @Benchmark
+    public int failedOlderThan20Imperative() {
+        return analytics.countNumberOfFailedStudentsOlderThan20Imperative(students);
+    }
+
+    /**
+     * Parallel stream failed count.
+     * @return Number of failed students older than 20
+     */
+    @Benchmark
+    public int failedOlderThan20ParallelStream() {
+        return pool.submit(() -> analytics.countNumberOfFailedStudentsOlderThan20ParallelStream(students)).join();
+    }
+
+    /**
+     * All three parallel stream queries back to back, one pass each.
+     * @param bh Sink for the answers
+     */
+    @Benchmark
+    public void allQueriesSeparately(final Blackhole bh) {
+        pool.submit(() -> {
+            bh.consume(analytics.averageAgeOfEnrolledStudentsParallelStream(students));
+            bh.consume(analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students));
+            bh.consume(analytics.countNumberOfFailedStudentsOlderThan20ParallelStream(students));
+        }).join();
+    }
+
+    /**
+     * All three queries in one fused pass.
+     * @return Answers to all three queries
+     */
+    @Benchmark
+    public FusedStudentAnalytics.Result allQueriesFused() {
+        return pool.submit(() -> fused.run(students)).join();
+    }
+}
@@ -0,0 +1,115 @@
+package edu.coursera.parallel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * All three student queries over a CSV file, streamed through the fused
+ * engine chunk by chunk, against reading the whole file into a Student[]
+ * first. The streamed path runs in a heap much smaller than the file, e.g.
+ * java -jar target/benchmarks.jar StudentCsv.streamed -p size=10000000
+ * -jvmArgs -Xmx128m.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2)
+@State(Scope.Benchmark)
+public class StudentCsvBenchmark {
+    /**
+     * First names students are drawn from.
+     */
+    private static final String[] FIRST_NAMES = {"Sanjay", "Yunming", "John", "Vivek", "Shams", "Max"};
+
+    /**
+     * Number of students in the file.
+     */
+    @Param({"2000000"})
+    private int size;
+
+    /**
+     * CSV file of students, 30% of which are currently enrolled.
+     */
+    private Path file;
+
+    /**
+     * Fused engine with all three queries registered.
+     */
+    private final FusedStudentAnalytics fused = new FusedStudentAnalytics();
+
+    /**
+     * Write the file, one record at a time so that generating it needs no
+     * more heap than streaming it, and register the fused queries.
+     * @throws IOException If the file cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("students", ".csv");
+        final Random r = new Random(123);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int s = 0; s < size; s++) {
+                out.write(FIRST_NAMES[r.nextInt(FIRST_NAMES.length)] + ",Smith," + r.nextDouble() * 100.0
+                        + "," + (1 + r.nextInt(100)) + "," + (s < size * 3 / 10) + "\n");
+            }
+        }
+        fused.register(StudentAggregation.averageAgeOfEnrolledStudents());
+        fused.register(StudentAggregation.mostCommonFirstNameOfInactiveStudents());
+        fused.register(StudentAggregation.countNumberOfFailedStudentsOlderThan20());
+    }
+
+    /**
+     * Delete the file.
+     * @throws IOException If the file cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    /**
+     * Stream the file through the fused engine.
+     * @return Answers to all three queries
+     * @throws IOException If the file cannot be read
+     */
+    @Benchmark
+    public FusedStudentAnalytics.Result streamed() throws IOException {
+        return fused.run(file);
+    }
+
+    /**
+     * Read the whole file into a Student[], then run the fused engine on it.
+     * @return Answers to all three queries
+     * @throws IOException If the file cannot be read
+     */
+    @Benchmark
+    public FusedStudentAnalytics.Result materialized() throws IOException {
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        final Student[] students = new Student[lines.size()];
+        for (int i = 0; i < students.length; i++) {
+            final String[] fields = lines.get(i).split(",");
+            students[i] = new Student(fields[0], fields[1], Double.parseDouble(fields[2]),
+                    Integer.parseInt(fields[3]), Boolean.parseBoolean(fields[4]));
+        }
+        return fused.run(students);
+    }
+}
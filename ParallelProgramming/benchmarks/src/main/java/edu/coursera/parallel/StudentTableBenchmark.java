@@ -0,0 +1,149 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StudentAnalytics queries over a Student[] with parallel streams against the
+ * same queries over a columnar StudentTable, on a pool of the given size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class StudentTableBenchmark {
+    /**
+     * First names students are drawn from.
+     */
+    private static final String[] FIRST_NAMES = {"Sanjay", "Yunming", "John", "Vivek", "Shams", "Max"};
+    /**
+     * Last names students are drawn from.
+     */
+    private static final String[] LAST_NAMES = {"Chatterjee", "Zhang", "Smith", "Sarkar", "Imam", "Grossman"};
+
+    /**
+     * Parallelism of the pool the queries run on.
+     */
+    @Param({"1", "4", "8"})
+    private int threads;
+
+    /**
+     * Number of students.
+     */
+    @Param({"10000000", "20000000"})
+    private int size;
+
+    /**
+     * Student data as objects, 30% of which are currently enrolled.
+     */
+    private Student[] students;
+
+    /**
+     * The same student data as a columnar table.
+     */
+    private StudentTable table;
+
+    /**
+     * Pool with the requested parallelism.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Analytics instance under test.
+     */
+    private final StudentAnalytics analytics = new StudentAnalytics();
+
+    /**
+     * Generate students, build the table and start the pool.
+     */
+    @Setup
+    public void setUp() {
+        students = new Student[size];
+        final Random r = new Random(123);
+        for (int s = 0; s < size; s++) {
+            students[s] = new Student(FIRST_NAMES[r.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[r.nextInt(LAST_NAMES.length)], r.nextDouble() * 100.0,
+                    1 + r.nextInt(100), s < size * 3 / 10);
+        }
+        table = StudentTable.fromStudents(students);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shut the pool down.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Average age over objects.
+     * @return Average age of enrolled students
+     */
+    @Benchmark
+    public double averageAgeObjects() {
+        return pool.submit(() -> analytics.averageAgeOfEnrolledStudentsParallelStream(students)).join();
+    }
+
+    /**
+     * Average age over columns.
+     * @return Average age of enrolled students
+     */
+    @Benchmark
+    public double averageAgeColumnar() {
+        return pool.submit(() -> analytics.averageAgeOfEnrolledStudentsColumnar(table)).join();
+    }
+
+    /**
+     * Most common name over objects.
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String mostCommonFirstNameObjects() {
+        return pool.submit(() -> analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students)).join();
+    }
+
+    /**
+     * Most common name over columns.
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String mostCommonFirstNameColumnar() {
+        return pool.submit(() -> analytics.mostCommonFirstNameOfInactiveStudentsColumnar(table)).join();
+    }
+
+    /**
+     * Failed count over objects.
+     * @return Number of failed students older than 20
+     */
+    @Benchmark
+    public int failedOlderThan20Objects() {
+        return pool.submit(() -> analytics.countNumberOfFailedStudentsOlderThan20ParallelStream(students)).join();
+    }
+
+    /**
+     * Failed count over columns.
+     * @return Number of failed students older than 20
+     */
+    @Benchmark
+    public int failedOlderThan20Columnar() {
+        return pool.submit(() -> analytics.countNumberOfFailedStudentsOlderThan20Columnar(table)).join();
+    }
+}
@@ -0,0 +1,242 @@
+package edu.coursera.parallel;
+
+/**
+ * Chooses how many tasks to split a reciprocal sum into, based on the array
+ * length, the number of available processors and a one-time calibration of
+ * how long the sequential kernel takes per element.
+ *
+ * The goal is for every task to do at least MIN_TASK_NANOS of work, so that
+ * fork/join overhead stays small relative to useful work, while creating no
+ * more than OVERDECOMPOSITION tasks per processor so that work stealing can
+ * still even out imbalance.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class AdaptiveGranularity {
+    /**
+     * Minimum estimated work per task, in nanoseconds.
+     */
+    public static final long MIN_TASK_NANOS = 50_000;
+    /**
+     * Maximum number of tasks created per available processor.
+     */
+    public static final int OVERDECOMPOSITION = 4;
+    /**
+     * Number of elements summed by the calibration run.
+     */
+    private static final int CALIBRATION_ELEMENTS = 1 << 16;
+    /**
+     * Number of timed calibration runs, of which the fastest is kept.
+     */
+    private static final int CALIBRATION_RUNS = 20;
+
+    /**
+     * Default constructor.
+     */
+    private AdaptiveGranularity() {
+    }
+
+    /**
+     * Lazily computed per-element cost of the sequential kernel. Holder
+     * idiom, so calibration runs at most once, on first use.
+     */
+    private static final class Calibration {
+        /**
+         * Measured nanoseconds per element.
+         */
+        static final double NANOS_PER_ELEMENT = calibrate();
+
+        /**
+         * Default constructor.
+         */
+        private Calibration() {
+        }
+    }
+
+    /**
+     * Get the calibrated cost of the sequential kernel, running the
+     * calibration if it has not run yet.
+     * @return Nanoseconds per element
+     */
+    public static double getNanosPerElement() {
+        return Calibration.NANOS_PER_ELEMENT;
+    }
+
+    /**
+     * Decide how many tasks to use for an array of the given length on this
+     * machine.
+     *
+     * @param length Number of elements to sum
+     * @return The decision and the inputs it was based on
+     */
+    public static Decision decide(final int length) {
+        return decide(length, Runtime.getRuntime().availableProcessors(),
+                getNanosPerElement());
+    }
+
+    /**
+     * Decide how many tasks to use from explicit inputs.
+     *
+     * @param length Number of elements to sum
+     * @param processors Number of available processors
+     * @param nanosPerElement Sequential cost per element
+     * @return The decision and the inputs it was based on
+     */
+    static Decision decide(
+            final int length,
+            final int processors,
+            final double nanosPerElement
+    ) {
+        final double estimatedNanos = length * nanosPerElement;
+        final long byWork = (long) (estimatedNanos / MIN_TASK_NANOS);
+        final long maxTasks = (long) processors * OVERDECOMPOSITION;
+        final int numTasks = (int) Math.max(1, Math.min(Math.min(byWork, maxTasks), length));
+        final String reason;
+        if (numTasks == 1) {
+            reason = "estimated work below two tasks' minimum, running sequentially";
+        } else if (numTasks == maxTasks) {
+            reason = "capped at " + OVERDECOMPOSITION + " tasks per processor";
+        } else {
+            reason = "one task per " + MIN_TASK_NANOS + "ns of estimated work";
+        }
+        return new Decision(length, processors, nanosPerElement, estimatedNanos, numTasks, reason);
+    }
+
+    /**
+     * Time the sequential kernel on a small array and return its cost per
+     * element. The fastest of several runs is used, which discards runs slowed
+     * by JIT compilation or interference.
+     *
+     * @return Nanoseconds per element
+     */
+    private static double calibrate() {
+        final double[] sample = new double[CALIBRATION_ELEMENTS];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = 1 + (i % 99);
+        }
+
+        long best = Long.MAX_VALUE;
+        double sink = 0;
+        for (int run = 0; run < CALIBRATION_RUNS; run++) {
+            final long start = System.nanoTime();
+            sink += ReciprocalArraySum.reciprocalSum(sample, 0, sample.length);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // Keep the result live so the kernel cannot be optimized away.
+        if (sink == 0) {
+            best++;
+        }
+        return Math.max(best, 1) / (double) CALIBRATION_ELEMENTS;
+    }
+
+    /**
+     * The outcome of a granularity decision, together with everything it was
+     * derived from.
+     */
+    public static final class Decision {
+        /**
+         * Number of elements to sum.
+         */
+        private final int length;
+        /**
+         * Number of available processors.
+         */
+        private final int processors;
+        /**
+         * Sequential cost per element in nanoseconds.
+         */
+        private final double nanosPerElement;
+        /**
+         * Estimated sequential cost of the whole array in nanoseconds.
+         */
+        private final double estimatedNanos;
+        /**
+         * Chosen number of tasks.
+         */
+        private final int numTasks;
+        /**
+         * Human-readable explanation of which rule picked numTasks.
+         */
+        private final String reason;
+
+        /**
+         * Constructor.
+         * @param setLength Number of elements to sum
+         * @param setProcessors Number of available processors
+         * @param setNanosPerElement Sequential cost per element
+         * @param setEstimatedNanos Estimated sequential cost of the array
+         * @param setNumTasks Chosen number of tasks
+         * @param setReason Explanation of the choice
+         */
+        Decision(
+                final int setLength,
+                final int setProcessors,
+                final double setNanosPerElement,
+                final double setEstimatedNanos,
+                final int setNumTasks,
+                final String setReason
+        ) {
+            this.length = setLength;
+            this.processors = setProcessors;
+            this.nanosPerElement = setNanosPerElement;
+            this.estimatedNanos = setEstimatedNanos;
+            this.numTasks = setNumTasks;
+            this.reason = setReason;
+        }
+
+        /**
+         * Get the number of elements the decision was made for.
+         * @return Array length
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Get the number of processors the decision assumed.
+         * @return Available processors
+         */
+        public int getProcessors() {
+            return processors;
+        }
+
+        /**
+         * Get the sequential cost per element the decision assumed.
+         * @return Nanoseconds per element
+         */
+        public double getNanosPerElement() {
+            return nanosPerElement;
+        }
+
+        /**
+         * Get the estimated sequential cost of the whole array.
+         * @return Estimated nanoseconds
+         */
+        public double getEstimatedNanos() {
+            return estimatedNanos;
+        }
+
+        /**
+         * Get the chosen number of tasks.
+         * @return Number of tasks, 1 meaning run sequentially
+         */
+        public int getNumTasks() {
+            return numTasks;
+        }
+
+        /**
+         * Get a human-readable explanation of which rule picked the number
+         * of tasks.
+         * @return Reason for the decision
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d tasks for %d elements on %d processors "
+                + "(%.3f ns/element, ~%.0f ns sequential): %s",
+                numTasks, length, processors, nanosPerElement, estimatedNanos, reason);
+        }
+    }
+}
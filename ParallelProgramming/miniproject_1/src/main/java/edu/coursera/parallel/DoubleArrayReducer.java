@@ -0,0 +1,237 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A parallel map-reduce over a double array: every element is transformed by
+ * a mapper and the results are folded together with a combiner, starting from
+ * an identity value.
+ *
+ * The array is cut into chunks with the same helpers ReciprocalArraySum uses,
+ * and the chunks are reduced as a fork/join tree so that idle workers steal
+ * whole subtrees of chunks. Within a chunk the loop keeps four independent
+ * accumulators, so the combiner must be associative and commutative, and
+ * identity must be a neutral element for it.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class DoubleArrayReducer {
+    /**
+     * Function applied to every element.
+     */
+    private final DoubleUnaryOperator mapper;
+    /**
+     * Function folding two partial results together.
+     */
+    private final DoubleBinaryOperator combiner;
+    /**
+     * Neutral element of combiner, returned for empty arrays.
+     */
+    private final double identity;
+
+    /**
+     * Constructor.
+     * @param setMapper Function applied to every element
+     * @param setCombiner Associative, commutative function folding two
+     *        partial results together
+     * @param setIdentity Neutral element of the combiner
+     */
+    public DoubleArrayReducer(
+            final DoubleUnaryOperator setMapper,
+            final DoubleBinaryOperator setCombiner,
+            final double setIdentity
+    ) {
+        this.mapper = setMapper;
+        this.combiner = setCombiner;
+        this.identity = setIdentity;
+    }
+
+    /**
+     * A reducer summing the reciprocals of the elements.
+     * @return Reciprocal sum reducer
+     */
+    public static DoubleArrayReducer reciprocalSum() {
+        return new DoubleArrayReducer(x -> 1 / x, Double::sum, 0);
+    }
+
+    /**
+     * A reducer summing the squares of the elements.
+     * @return Sum of squares reducer
+     */
+    public static DoubleArrayReducer sumOfSquares() {
+        return new DoubleArrayReducer(x -> x * x, Double::sum, 0);
+    }
+
+    /**
+     * A reducer summing the absolute values of the elements, i.e. the L1 norm.
+     * @return L1 norm reducer
+     */
+    public static DoubleArrayReducer l1Norm() {
+        return new DoubleArrayReducer(Math::abs, Double::sum, 0);
+    }
+
+    /**
+     * A reducer finding the largest absolute value, i.e. the infinity norm.
+     * @return Infinity norm reducer
+     */
+    public static DoubleArrayReducer maxNorm() {
+        return new DoubleArrayReducer(Math::abs, Math::max, 0);
+    }
+
+    /**
+     * A reducer finding the smallest element.
+     * @return Minimum reducer
+     */
+    public static DoubleArrayReducer min() {
+        return new DoubleArrayReducer(x -> x, Math::min, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * A reducer finding the largest element.
+     * @return Maximum reducer
+     */
+    public static DoubleArrayReducer max() {
+        return new DoubleArrayReducer(x -> x, Math::max, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Compute the Euclidean (L2) norm of an array in parallel.
+     *
+     * @param input Input array
+     * @param nChunks The number of chunks to split the array into
+     * @return The square root of the sum of squares of the elements
+     */
+    public static double l2Norm(final double[] input, final int nChunks) {
+        return Math.sqrt(sumOfSquares().reduce(input, nChunks));
+    }
+
+    /**
+     * Reduce an array on the shared common pool.
+     *
+     * @param input Input array
+     * @param nChunks The number of chunks to split the array into
+     * @return The combination of the mapped elements, or identity if input
+     *         is empty
+     */
+    public double reduce(final double[] input, final int nChunks) {
+        return reduce(input, nChunks, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reduce an array on a caller-supplied pool.
+     *
+     * @param input Input array
+     * @param nChunks The number of chunks to split the array into
+     * @param pool Pool to run the tasks on
+     * @return The combination of the mapped elements, or identity if input
+     *         is empty
+     */
+    public double reduce(
+            final double[] input,
+            final int nChunks,
+            final ForkJoinPool pool
+    ) {
+        if (nChunks <= 0) {
+            throw new IllegalArgumentException("Number of chunks must be positive, got " + nChunks);
+        }
+        if (input.length == 0) {
+            return identity;
+        }
+        final int chunks = Math.min(nChunks, input.length);
+        return pool.invoke(new ReduceTask(0, chunks, chunks, input));
+    }
+
+    /**
+     * Sequentially reduce a range of the input array.
+     *
+     * @param input Input array
+     * @param startInclusive First index to include
+     * @param endExclusive First index past the range
+     * @return The combination of the mapped elements of the range
+     */
+    double reduceRange(
+            final double[] input,
+            final int startInclusive,
+            final int endExclusive
+    ) {
+        double acc0 = identity;
+        double acc1 = identity;
+        double acc2 = identity;
+        double acc3 = identity;
+
+        int i = startInclusive;
+        for (; i < endExclusive - 3; i += 4) {
+            acc0 = combiner.applyAsDouble(acc0, mapper.applyAsDouble(input[i]));
+            acc1 = combiner.applyAsDouble(acc1, mapper.applyAsDouble(input[i + 1]));
+            acc2 = combiner.applyAsDouble(acc2, mapper.applyAsDouble(input[i + 2]));
+            acc3 = combiner.applyAsDouble(acc3, mapper.applyAsDouble(input[i + 3]));
+        }
+        for (; i < endExclusive; i++) {
+            acc0 = combiner.applyAsDouble(acc0, mapper.applyAsDouble(input[i]));
+        }
+
+        return combiner.applyAsDouble(
+                combiner.applyAsDouble(acc0, acc1),
+                combiner.applyAsDouble(acc2, acc3));
+    }
+
+    /**
+     * Task reducing a range of chunks, splitting the range in half until it
+     * covers a single chunk.
+     */
+    private final class ReduceTask extends RecursiveTask<Double> {
+        /**
+         * First chunk covered by this task.
+         */
+        private final int startChunkInclusive;
+        /**
+         * First chunk past the range covered by this task.
+         */
+        private final int endChunkExclusive;
+        /**
+         * Total number of chunks the input is split into.
+         */
+        private final int nChunks;
+        /**
+         * Input array to reduce.
+         */
+        private final double[] input;
+
+        /**
+         * Constructor.
+         * @param setStartChunkInclusive First chunk covered by this task
+         * @param setEndChunkExclusive First chunk past this task's range
+         * @param setNChunks Total number of chunks
+         * @param setInput Input values
+         */
+        ReduceTask(
+                final int setStartChunkInclusive,
+                final int setEndChunkExclusive,
+                final int setNChunks,
+                final double[] setInput
+        ) {
+            this.startChunkInclusive = setStartChunkInclusive;
+            this.endChunkExclusive = setEndChunkExclusive;
+            this.nChunks = setNChunks;
+            this.input = setInput;
+        }
+
+        @Override
+        protected Double compute() {
+            if (endChunkExclusive - startChunkInclusive == 1) {
+                return reduceRange(input,
+                        ReciprocalArraySum.getChunkStartInclusive(startChunkInclusive, nChunks, input.length),
+                        ReciprocalArraySum.getChunkEndExclusive(startChunkInclusive, nChunks, input.length));
+            }
+
+            final int mid = (startChunkInclusive + endChunkExclusive) >>> 1;
+            final ReduceTask left = new ReduceTask(startChunkInclusive, mid, nChunks, input);
+            final ReduceTask right = new ReduceTask(mid, endChunkExclusive, nChunks, input);
+            left.fork();
+            final double rightValue = right.compute();
+            return combiner.applyAsDouble(left.join(), rightValue);
+        }
+    }
+}
@@ -1,15 +1,47 @@
 package edu.coursera.parallel;
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveAction;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Stream;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 /**
  * Class wrapping methods for implementing reciprocal array sum in parallel.
  */
 @SuppressWarnings("WeakerAccess")
 public final class ReciprocalArraySum {
+    /**
+     * Default number of elements below which a task stops splitting.
+     */
+    public static final int DEFAULT_THRESHOLD = 1 << 16;
+    /**
+     * Number of elements in each leaf of the deterministic reduction. This is
+     * part of the shape of the combine tree, so changing it changes results.
+     */
+    private static final int COMPENSATED_BLOCK = 1 << 12;
+    /**
+     * Number of leaves below which the deterministic reduction stops forking
+     * and combines sequentially.
+     */
+    private static final int COMPENSATED_FORK_BLOCKS = 16;
+    /**
+     * Size in bytes of each region of a file mapped at once. FileChannel.map
+     * is limited to 2 GB per mapping, and this is a multiple of any page size.
+     */
+    private static final long MAPPED_SEGMENT_BYTES = 1L << 30;
+
+    /**
+     * Doubles copied out of a mapped buffer at a time, small enough to stay
+     * in the first-level cache while the kernel sums them.
+     */
+    private static final int MAPPED_BLOCK = 1024;
 
     /**
      * Default constructor.
@@ -35,6 +67,54 @@ public final class ReciprocalArraySum {
         return sum;
     }
 
+    /**
+     * Sequentially compute the sum of the reciprocal values for a given array
+     * using the unrolled multi-accumulator kernel.
+     *
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    protected static double seqUnrolledArraySum(final double[] input) {
+        return reciprocalSum(input, 0, input.length);
+    }
+
+    /**
+     * Sum the reciprocals of a range of the input array. The loop is unrolled
+     * by four into independent accumulators so consecutive additions do not
+     * wait on each other, which lets the divisions and adds pipeline instead
+     * of serializing on floating-point add latency. The result can differ
+     * from seqArraySum in the last few bits because the additions are
+     * associated differently.
+     *
+     * @param input Input array
+     * @param startInclusive First index to include
+     * @param endExclusive First index past the range
+     * @return The sum of the reciprocals of the given range
+     */
+    static double reciprocalSum(
+            final double[] input,
+            final int startInclusive,
+            final int endExclusive
+    ) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+
+        int i = startInclusive;
+        for (; i < endExclusive - 3; i += 4) {
+            sum0 += 1 / input[i];
+            sum1 += 1 / input[i + 1];
+            sum2 += 1 / input[i + 2];
+            sum3 += 1 / input[i + 3];
+        }
+        for (; i < endExclusive; i++) {
+            sum0 += 1 / input[i];
+        }
+
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
     /**
      * Computes the size of each chunk, given the number of chunks to create
      * across a given number of elements.
@@ -43,9 +123,10 @@ public final class ReciprocalArraySum {
      * @param nElements The number of elements to chunk across
      * @return The default chunk size
      */
-    private static int getChunkSize(final int nChunks, final int nElements) {
-        // Integer ceil
-        return (nElements + nChunks - 1) / nChunks;
+    static int getChunkSize(final int nChunks, final int nElements) {
+        // Integer ceil, in long so that arrays near Integer.MAX_VALUE do not
+        // overflow
+        return (int) (((long) nElements + nChunks - 1) / nChunks);
     }
 
     /**
@@ -58,14 +139,13 @@ public final class ReciprocalArraySum {
      * @return The inclusive index that this chunk starts at in the set of
      *         nElements
      */
-    @SuppressWarnings("unused")
-    private static int getChunkStartInclusive(
+    static int getChunkStartInclusive(
             final int chunk,
             final int nChunks,
             final int nElements
     ) {
         final int chunkSize = getChunkSize(nChunks, nElements);
-        return chunk * chunkSize;
+        return (int) Math.min((long) chunk * chunkSize, nElements);
     }
 
     /**
@@ -77,26 +157,27 @@ public final class ReciprocalArraySum {
      * @param nElements The number of elements to chunk across
      * @return The exclusive end index for this chunk
      */
-    @SuppressWarnings("unused")
-    private static int getChunkEndExclusive(
+    static int getChunkEndExclusive(
             final int chunk,
             final int nChunks,
             final int nElements
     ) {
         final int chunkSize = getChunkSize(nChunks, nElements);
-        final int end = (chunk + 1) * chunkSize;
+        final long end = (long) (chunk + 1) * chunkSize;
         if (end > nElements) {
             return nElements;
         } else {
-            return end;
+            return (int) end;
         }
     }
 
     /**
-     * This class stub can be filled in to implement the body of each task
-     * created to perform reciprocal array sum in parallel.
+     * Task computing the reciprocal sum of a range of the input array. Ranges
+     * longer than the threshold are split in half, with one half forked and
+     * the other computed in place, until every leaf is at most threshold
+     * elements long.
      */
-    private static class ReciprocalArraySumTask extends RecursiveAction {
+    private static class ReciprocalArraySumTask extends RecursiveTask<Double> {
         /**
          * Starting index for traversal done by this task.
          */
@@ -110,9 +191,9 @@ public final class ReciprocalArraySum {
          */
         private final double[] input;
         /**
-         * Intermediate value produced by this task.
+         * Largest range this task will sum without splitting.
          */
-        private double value;
+        private final int threshold;
 
         /**
          * Constructor.
@@ -120,33 +201,227 @@ public final class ReciprocalArraySum {
          *        parallel traversal at.
          * @param setEndIndexExclusive Set ending index for parallel traversal.
          * @param setInput Input values
+         * @param setThreshold Largest range to sum without splitting
          */
         ReciprocalArraySumTask(
                 final int setStartIndexInclusive,
                 final int setEndIndexExclusive,
-                final double[] setInput
+                final double[] setInput,
+                final int setThreshold
         ) {
             this.startIndexInclusive = setStartIndexInclusive;
             this.endIndexExclusive = setEndIndexExclusive;
             this.input = setInput;
+            this.threshold = setThreshold;
+        }
+
+        @Override
+        protected Double compute() {
+            if (endIndexExclusive - startIndexInclusive <= threshold) {
+                return reciprocalSum(input, startIndexInclusive, endIndexExclusive);
+            }
+
+            final int mid = (startIndexInclusive + endIndexExclusive) >>> 1;
+            final ReciprocalArraySumTask left = new ReciprocalArraySumTask(
+                    startIndexInclusive, mid, input, threshold);
+            final ReciprocalArraySumTask right = new ReciprocalArraySumTask(
+                    mid, endIndexExclusive, input, threshold);
+            left.fork();
+            final double rightValue = right.compute();
+            return left.join() + rightValue;
         }
+    }
 
+    /**
+     * Task computing a deterministic, compensated reciprocal sum over a range
+     * of fixed-size blocks. Each block is summed with Kahan compensation and
+     * block results are combined pairwise by always splitting the block range
+     * at its midpoint, so the order of every floating-point operation depends
+     * only on the input length and never on how the work was scheduled.
+     */
+    private static class CompensatedSumTask extends RecursiveTask<Double> {
+        /**
+         * First block covered by this task.
+         */
+        private final int startBlockInclusive;
+        /**
+         * First block past the range covered by this task.
+         */
+        private final int endBlockExclusive;
         /**
-         * Getter for the value produced by this task.
-         * @return Value produced by this task
+         * Input array to reciprocal sum.
          */
-        public double getValue() {
-            return value;
+        private final double[] input;
+
+        /**
+         * Constructor.
+         * @param setStartBlockInclusive First block covered by this task
+         * @param setEndBlockExclusive First block past this task's range
+         * @param setInput Input values
+         */
+        CompensatedSumTask(
+                final int setStartBlockInclusive,
+                final int setEndBlockExclusive,
+                final double[] setInput
+        ) {
+            this.startBlockInclusive = setStartBlockInclusive;
+            this.endBlockExclusive = setEndBlockExclusive;
+            this.input = setInput;
         }
 
         @Override
-        protected void compute() {
-            for(int i = startIndexInclusive; i < endIndexExclusive; i++) {
-                value += 1 / input[i];
+        protected Double compute() {
+            if (endBlockExclusive - startBlockInclusive <= COMPENSATED_FORK_BLOCKS) {
+                return combine(input, startBlockInclusive, endBlockExclusive);
+            }
+
+            final int mid = (startBlockInclusive + endBlockExclusive) >>> 1;
+            final CompensatedSumTask left = new CompensatedSumTask(
+                    startBlockInclusive, mid, input);
+            final CompensatedSumTask right = new CompensatedSumTask(
+                    mid, endBlockExclusive, input);
+            left.fork();
+            final double rightValue = right.compute();
+            return left.join() + rightValue;
+        }
+
+        /**
+         * Sequentially combine a range of blocks using the same midpoint
+         * splits as compute.
+         *
+         * @param input Input array
+         * @param startBlock First block to include
+         * @param endBlock First block past the range
+         * @return The sum of the reciprocals of the given blocks
+         */
+        static double combine(
+                final double[] input,
+                final int startBlock,
+                final int endBlock
+        ) {
+            if (endBlock - startBlock == 1) {
+                final int start = startBlock * COMPENSATED_BLOCK;
+                return kahanReciprocalSum(input, start,
+                        Math.min(start + COMPENSATED_BLOCK, input.length));
             }
+            final int mid = (startBlock + endBlock) >>> 1;
+            return combine(input, startBlock, mid)
+                + combine(input, mid, endBlock);
         }
     }
 
+    /**
+     * Task computing the reciprocal sum of a range of a memory-mapped buffer of
+     * doubles, split the same way as ReciprocalArraySumTask. Leaves copy the
+     * buffer into a small array one block at a time with a bulk get and sum
+     * each block with the shared reciprocalSum kernel.
+     */
+    private static class MappedReciprocalSumTask extends RecursiveTask<Double> {
+        /**
+         * Starting index for traversal done by this task.
+         */
+        private final int startIndexInclusive;
+        /**
+         * Ending index for traversal done by this task.
+         */
+        private final int endIndexExclusive;
+        /**
+         * Mapped input values, only read through absolute gets.
+         */
+        private final DoubleBuffer input;
+        /**
+         * Largest range this task will sum without splitting.
+         */
+        private final int threshold;
+
+        /**
+         * Constructor.
+         * @param setStartIndexInclusive Set the starting index to begin
+         *        parallel traversal at.
+         * @param setEndIndexExclusive Set ending index for parallel traversal.
+         * @param setInput Mapped input values
+         * @param setThreshold Largest range to sum without splitting
+         */
+        MappedReciprocalSumTask(
+                final int setStartIndexInclusive,
+                final int setEndIndexExclusive,
+                final DoubleBuffer setInput,
+                final int setThreshold
+        ) {
+            this.startIndexInclusive = setStartIndexInclusive;
+            this.endIndexExclusive = setEndIndexExclusive;
+            this.input = setInput;
+            this.threshold = setThreshold;
+        }
+
+        @Override
+        protected Double compute() {
+            if (endIndexExclusive - startIndexInclusive <= threshold) {
+                final double[] block = new double[Math.min(MAPPED_BLOCK, endIndexExclusive - startIndexInclusive)];
+                final DoubleBuffer view = input.duplicate();
+                view.position(startIndexInclusive);
+                double sum = 0;
+                for (int i = startIndexInclusive; i < endIndexExclusive; i += block.length) {
+                    final int length = Math.min(block.length, endIndexExclusive - i);
+                    view.get(block, 0, length);
+                    sum += reciprocalSum(block, 0, length);
+                }
+                return sum;
+            }
+
+            final int mid = (startIndexInclusive + endIndexExclusive) >>> 1;
+            final MappedReciprocalSumTask left = new MappedReciprocalSumTask(
+                    startIndexInclusive, mid, input, threshold);
+            final MappedReciprocalSumTask right = new MappedReciprocalSumTask(
+                    mid, endIndexExclusive, input, threshold);
+            left.fork();
+            final double rightValue = right.compute();
+            return left.join() + rightValue;
+        }
+    }
+
+    /**
+     * Sum the reciprocals of a range of the input array using Kahan
+     * compensated summation. Even and odd elements go to two independent
+     * compensated sums so that their dependency chains overlap.
+     *
+     * @param input Input array
+     * @param startInclusive First index to include
+     * @param endExclusive First index past the range
+     * @return The compensated sum of the reciprocals of the given range
+     */
+    static double kahanReciprocalSum(
+            final double[] input,
+            final int startInclusive,
+            final int endExclusive
+    ) {
+        double sum0 = 0;
+        double compensation0 = 0;
+        double sum1 = 0;
+        double compensation1 = 0;
+
+        int i = startInclusive;
+        for (; i < endExclusive - 1; i += 2) {
+            final double y0 = 1 / input[i] - compensation0;
+            final double t0 = sum0 + y0;
+            compensation0 = (t0 - sum0) - y0;
+            sum0 = t0;
+
+            final double y1 = 1 / input[i + 1] - compensation1;
+            final double t1 = sum1 + y1;
+            compensation1 = (t1 - sum1) - y1;
+            sum1 = t1;
+        }
+        if (i < endExclusive) {
+            final double y0 = 1 / input[i] - compensation0;
+            final double t0 = sum0 + y0;
+            compensation0 = (t0 - sum0) - y0;
+            sum0 = t0;
+        }
+
+        return (sum0 + sum1) - (compensation0 + compensation1);
+    }
+
     /**
      * This method computes the same reciprocal sum as
      * seqArraySum, but use two tasks running in parallel under the Java Fork
@@ -162,9 +437,8 @@ public final class ReciprocalArraySum {
 
     /**
      * Extend the work to implement parArraySum to use a set
-     * number of tasks to compute the reciprocal array sum. You may find the
-     * above utilities getChunkStartInclusive and getChunkEndExclusive helpful
-     * in computing the range of element indices that belong to each chunk.
+     * number of tasks to compute the reciprocal array sum. The array is split
+     * into roughly numTasks leaves which run on the shared common pool.
      *
      * @param input Input array
      * @param numTasks The number of tasks to create
@@ -174,27 +448,194 @@ public final class ReciprocalArraySum {
             final double[] input,
             final int numTasks
     ) {
-        if(INPUT_LENGTH == input.length) {
-            return LAST_VALUE;
-        } else {
-            INPUT_LENGTH = input.length;
-        }
-        ForkJoinPool pool = new ForkJoinPool(numTasks);
-        ReciprocalArraySumTask[] reciprocalArraySumTasks = new ReciprocalArraySumTask[numTasks];
-        for(int i = 0; i < numTasks; i++) {
-            pool.execute(
-                    reciprocalArraySumTasks[i] = new ReciprocalArraySumTask(
-                            i * (input.length) / numTasks,
-                            (i + 1) * (input.length) / numTasks,
-                            input
-                    )
-            );
-        }
-        pool.awaitQuiescence(5, TimeUnit.SECONDS);
-        LAST_VALUE = Stream.of(reciprocalArraySumTasks).mapToDouble(ReciprocalArraySumTask::getValue).sum();
-        return LAST_VALUE;
-    }
-
-    private static int INPUT_LENGTH;//Cached length
-    private static double LAST_VALUE;//Cached value
+        final int threshold = Math.max(1, getChunkSize(numTasks, input.length));
+        return parRecursiveArraySum(input, threshold);
+    }
+
+    /**
+     * Compute the reciprocal sum using a number of tasks chosen by
+     * AdaptiveGranularity from the input length, the available processors
+     * and the calibrated per-element cost. Small inputs run sequentially.
+     *
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    public static double parAdaptiveArraySum(final double[] input) {
+        return parAdaptiveArraySum(input, decision -> { });
+    }
+
+    /**
+     * Compute the reciprocal sum with an adaptively chosen number of tasks,
+     * reporting the decision to a metrics hook before running.
+     *
+     * @param input Input array
+     * @param metrics Receives the granularity decision for this call
+     * @return The sum of the reciprocals of the array input
+     */
+    public static double parAdaptiveArraySum(
+            final double[] input,
+            final Consumer<AdaptiveGranularity.Decision> metrics
+    ) {
+        final AdaptiveGranularity.Decision decision = AdaptiveGranularity.decide(input.length);
+        metrics.accept(decision);
+        if (decision.getNumTasks() == 1) {
+            return seqUnrolledArraySum(input);
+        }
+        return parManyTaskArraySum(input, decision.getNumTasks());
+    }
+
+    /**
+     * Compute the reciprocal sum by recursively splitting the input down to
+     * the given threshold on the shared common pool.
+     *
+     * @param input Input array
+     * @param threshold Largest range a single task sums without splitting
+     * @return The sum of the reciprocals of the array input
+     */
+    public static double parRecursiveArraySum(
+            final double[] input,
+            final int threshold
+    ) {
+        return parRecursiveArraySum(input, threshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compute the reciprocal sum by recursively splitting the input down to
+     * the given threshold on a caller-supplied pool. The pool is not shut down
+     * and may be reused across calls.
+     *
+     * @param input Input array
+     * @param threshold Largest range a single task sums without splitting
+     * @param pool Pool to run the tasks on
+     * @return The sum of the reciprocals of the array input
+     */
+    public static double parRecursiveArraySum(
+            final double[] input,
+            final int threshold,
+            final ForkJoinPool pool
+    ) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive, got " + threshold);
+        }
+        return pool.invoke(new ReciprocalArraySumTask(0, input.length, input, threshold));
+    }
+
+    /**
+     * Compute the reciprocal sum with Kahan compensation inside fixed-size
+     * leaves and a fixed-shape pairwise combine tree, on the shared common
+     * pool. The result is bit-identical for a given input no matter how many
+     * threads run it.
+     *
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    public static double parDeterministicArraySum(final double[] input) {
+        return parDeterministicArraySum(input, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compute the deterministic compensated reciprocal sum on a
+     * caller-supplied pool.
+     *
+     * @param input Input array
+     * @param pool Pool to run the tasks on
+     * @return The sum of the reciprocals of the array input
+     */
+    public static double parDeterministicArraySum(
+            final double[] input,
+            final ForkJoinPool pool
+    ) {
+        if (input.length == 0) {
+            return 0;
+        }
+        final int nBlocks = (input.length + COMPENSATED_BLOCK - 1) / COMPENSATED_BLOCK;
+        return pool.invoke(new CompensatedSumTask(0, nBlocks, input));
+    }
+
+    /**
+     * Compute the reciprocal sum of a file of little-endian doubles without
+     * loading it onto the heap, on the shared common pool.
+     *
+     * @param file File containing the input values
+     * @return The sum of the reciprocals of the values in the file
+     * @throws IOException If the file cannot be read or mapped
+     */
+    public static double mappedFileArraySum(final Path file) throws IOException {
+        return mappedFileArraySum(file, DEFAULT_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compute the reciprocal sum of a file of little-endian doubles without
+     * loading it onto the heap. The file is memory-mapped in page-aligned
+     * segments, and each segment is split recursively down to threshold
+     * elements on the given pool.
+     *
+     * @param file File containing the input values
+     * @param threshold Largest range a single task sums without splitting
+     * @param pool Pool to run the tasks on
+     * @return The sum of the reciprocals of the values in the file
+     * @throws IOException If the file cannot be read or mapped
+     */
+    public static double mappedFileArraySum(
+            final Path file,
+            final int threshold,
+            final ForkJoinPool pool
+    ) throws IOException {
+        return mappedFileArraySum(file, threshold, pool, MAPPED_SEGMENT_BYTES);
+    }
+
+    /**
+     * Compute the reciprocal sum of a file of little-endian doubles, mapping
+     * segmentBytes of it at a time.
+     *
+     * @param file File containing the input values
+     * @param threshold Largest range a single task sums without splitting
+     * @param pool Pool to run the tasks on
+     * @param segmentBytes Bytes per mapping, a positive multiple of
+     *        Double.BYTES of at most Integer.MAX_VALUE; multiples of the page
+     *        size avoid mapping the pages at segment boundaries twice
+     * @return The sum of the reciprocals of the values in the file
+     * @throws IOException If the file cannot be read or mapped
+     */
+    static double mappedFileArraySum(
+            final Path file,
+            final int threshold,
+            final ForkJoinPool pool,
+            final long segmentBytes
+    ) throws IOException {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive, got " + threshold);
+        }
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE || segmentBytes % Double.BYTES != 0) {
+            throw new IllegalArgumentException("Segment size must be a positive multiple of " + Double.BYTES
+                + " bytes no larger than " + Integer.MAX_VALUE + ", got " + segmentBytes);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size % Double.BYTES != 0) {
+                throw new IOException(file + " is " + size
+                    + " bytes long, which is not a whole number of doubles");
+            }
+
+            final List<MappedReciprocalSumTask> tasks = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += segmentBytes) {
+                final long length = Math.min(segmentBytes, size - offset);
+                final DoubleBuffer segment = channel
+                    .map(FileChannel.MapMode.READ_ONLY, offset, length)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+                final MappedReciprocalSumTask task = new MappedReciprocalSumTask(
+                        0, segment.limit(), segment, threshold);
+                tasks.add(task);
+                pool.execute(task);
+            }
+
+            double sum = 0;
+            for (MappedReciprocalSumTask task : tasks) {
+                sum += task.join();
+            }
+            return sum;
+        }
+    }
 }
@@ -0,0 +1,241 @@
+package edu.coursera.parallel;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe memoization layer in front of
+ * ReciprocalArraySum.parManyTaskArraySum.
+ *
+ * Entries are keyed on the identity of the input array plus a stamp that
+ * describes its contents. The intended stamp is an explicit version supplied
+ * by the caller, who bumps it whenever the array is written; a lookup then
+ * costs a hash map probe. For callers that cannot track writes, the stamp can
+ * instead be a fingerprint over every element of the array. A fingerprint
+ * pass reads the whole array, so on arrays larger than the caches a hit costs
+ * about as much memory traffic as the sum and only saves its divisions, and
+ * a miss costs the sum plus two fingerprint passes. Arrays are only weakly
+ * referenced, so the cache never keeps an input alive, and the least recently
+ * used entry is evicted once the capacity is reached.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ReciprocalArraySumCache {
+    /**
+     * Maximum number of cached sums.
+     */
+    private final int capacity;
+    /**
+     * Cached sums in access order, guarded by its own monitor.
+     */
+    private final LinkedHashMap<Key, Double> entries;
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * Number of lookups that had to compute the sum.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param setCapacity Maximum number of sums to retain, must be positive
+     */
+    public ReciprocalArraySumCache(final int setCapacity) {
+        if (setCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + setCapacity);
+        }
+        this.capacity = setCapacity;
+        this.entries = new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Double> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Compute the reciprocal sum of input using numTasks tasks, reusing a
+     * previous result if the same array with the same contents has been seen
+     * before. The contents are identified by a fingerprint over all elements,
+     * taken before and again after computing a missing sum; the sum is only
+     * cached if the two match, so a sum that raced with a write is not cached
+     * unless the writes restored the contents the sum started from. Prefer the versioned overload when the
+     * caller knows when the array is written.
+     *
+     * @param input Input array
+     * @param numTasks The number of tasks to create on a cache miss
+     * @return The sum of the reciprocals of the array input
+     */
+    public double sum(final double[] input, final int numTasks) {
+        final long before = fingerprint(input);
+        final Double cached = get(input, before);
+        if (cached != null) {
+            return cached;
+        }
+        final double value = ReciprocalArraySum.parManyTaskArraySum(input, numTasks);
+        if (fingerprint(input) == before) {
+            put(input, before, value);
+        }
+        return value;
+    }
+
+    /**
+     * Compute the reciprocal sum of input using numTasks tasks, reusing a
+     * previous result if the same array has been seen before with the same
+     * version. Callers must pass a new version after every write to input,
+     * and must not write to input while the sum is being computed.
+     *
+     * @param input Input array
+     * @param version Caller-maintained version stamp of the array contents
+     * @param numTasks The number of tasks to create on a cache miss
+     * @return The sum of the reciprocals of the array input
+     */
+    public double sum(final double[] input, final long version, final int numTasks) {
+        final Double cached = get(input, version);
+        if (cached != null) {
+            return cached;
+        }
+        final double value = ReciprocalArraySum.parManyTaskArraySum(input, numTasks);
+        put(input, version, value);
+        return value;
+    }
+
+    /**
+     * Get the number of lookups answered from the cache.
+     * @return Cache hit count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups that had to compute the sum.
+     * @return Cache miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of sums currently retained.
+     * @return Number of cached entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Drop every cached sum. The hit and miss counters are left untouched.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Compute a 64-bit fingerprint of the contents of an array. This is a
+     * single multiply-xor pass, which skips the divisions of the sum but not
+     * its reads of memory.
+     *
+     * @param input Input array
+     * @return Fingerprint of the array contents
+     */
+    static long fingerprint(final double[] input) {
+        long h = input.length;
+        for (double anInput : input) {
+            h = (h ^ Double.doubleToRawLongBits(anInput)) * 0x9E3779B97F4A7C15L;
+        }
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Look up the sum for input under the given stamp, counting a hit or a
+     * miss. The sum itself is computed by the caller outside of the lock, so
+     * two concurrent misses on the same key may both compute it.
+     *
+     * @param input Input array
+     * @param stamp Fingerprint or version of the array contents
+     * @return The cached sum, or null on a miss
+     */
+    private Double get(final double[] input, final long stamp) {
+        final Double cached;
+        synchronized (entries) {
+            cached = entries.get(new Key(input, stamp));
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * Cache the sum for input under the given stamp.
+     *
+     * @param input Input array
+     * @param stamp Fingerprint or version of the array contents
+     * @param value The sum of the reciprocals of the array input
+     */
+    private void put(final double[] input, final long stamp, final double value) {
+        synchronized (entries) {
+            entries.put(new Key(input, stamp), value);
+        }
+    }
+
+    /**
+     * Cache key matching an array by reference together with a stamp of its
+     * contents.
+     */
+    private static final class Key {
+        /**
+         * The array this key refers to, cleared once it is collected.
+         */
+        private final WeakReference<double[]> array;
+        /**
+         * Identity hash of the array, kept so the key stays hashable after
+         * the array has been collected.
+         */
+        private final int identity;
+        /**
+         * Fingerprint or version of the array contents.
+         */
+        private final long stamp;
+
+        /**
+         * Constructor.
+         * @param setArray The array to key on
+         * @param setStamp Fingerprint or version of the array contents
+         */
+        Key(final double[] setArray, final long setStamp) {
+            this.array = new WeakReference<>(setArray);
+            this.identity = System.identityHashCode(setArray);
+            this.stamp = setStamp;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            final double[] referent = array.get();
+            return identity == other.identity && stamp == other.stamp
+                && referent != null && referent == other.array.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * identity + Long.hashCode(stamp);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class DoubleArrayReducerTest extends TestCase {
+
+    /**
+     * Create a double[] of length N with values in [-50, 50).
+     *
+     * @param N Size of the array to create
+     * @return Initialized double array of length N
+     */
+    private double[] createArray(final int N) {
+        final double[] input = new double[N];
+        final Random rand = new Random(314);
+
+        for (int i = 0; i < N; i++) {
+            input[i] = rand.nextDouble() * 100 - 50;
+        }
+
+        return input;
+    }
+
+    /**
+     * Test the built-in reducers against hand-written loops, for chunk counts that do and do not divide the input.
+     */
+    public void testBuiltInReducers() {
+        final double[] input = createArray(1_000_003);
+
+        double sumOfSquares = 0;
+        double l1 = 0;
+        double maxAbs = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double reciprocal = 0;
+        for (double x : input) {
+            sumOfSquares += x * x;
+            l1 += Math.abs(x);
+            maxAbs = Math.max(maxAbs, Math.abs(x));
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+            reciprocal += 1 / x;
+        }
+
+        for (int nChunks : new int[] {1, 7, 64, 2_000_000}) {
+            assertEquals(sumOfSquares, DoubleArrayReducer.sumOfSquares().reduce(input, nChunks), 1E-3);
+            assertEquals(Math.sqrt(sumOfSquares), DoubleArrayReducer.l2Norm(input, nChunks), 1E-6);
+            assertEquals(l1, DoubleArrayReducer.l1Norm().reduce(input, nChunks), 1E-3);
+            assertEquals(maxAbs, DoubleArrayReducer.maxNorm().reduce(input, nChunks));
+            assertEquals(min, DoubleArrayReducer.min().reduce(input, nChunks));
+            assertEquals(max, DoubleArrayReducer.max().reduce(input, nChunks));
+            assertEquals(reciprocal, DoubleArrayReducer.reciprocalSum().reduce(input, nChunks), 1E-3);
+        }
+    }
+
+    /**
+     * Test a custom reducer on a caller-supplied pool, and that empty input returns the identity.
+     */
+    public void testCustomReducer() {
+        final double[] input = createArray(10_007);
+        final DoubleArrayReducer countPositive = new DoubleArrayReducer(x -> x > 0 ? 1 : 0, Double::sum, 0);
+
+        int expected = 0;
+        for (double x : input) {
+            if (x > 0) {
+                expected++;
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertEquals((double) expected, countPositive.reduce(input, 16, pool));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(Double.NEGATIVE_INFINITY, DoubleArrayReducer.max().reduce(new double[0], 4));
+    }
+}
@@ -1,6 +1,15 @@
 package edu.coursera.parallel;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import junit.framework.TestCase;
 
@@ -153,4 +162,199 @@ public class ReciprocalArraySumTest extends TestCase {
                 "least %fx faster, but it only achieved %fx speedup", minimalExpectedSpeedup, speedup);
         assertTrue(errMsg, speedup >= minimalExpectedSpeedup);
     }
+
+    /**
+     * Test that the result cache never returns the sum of a different array of the same length, and that it does
+     * notice in-place writes to an array it has already seen.
+     */
+    public void testCacheDistinguishesEqualLengthArrays() {
+        final int ncores = getNCores();
+        final ReciprocalArraySumCache cache = new ReciprocalArraySumCache(4);
+        final double[] first = createArray(1_000_000);
+        final double[] second = createArray(1_000_000);
+        second[0] = first[0] + 1;
+
+        assertEquals(seqArraySum(first), cache.sum(first, ncores), 1E-2);
+        assertEquals(seqArraySum(second), cache.sum(second, ncores), 1E-2);
+        assertEquals(seqArraySum(first), cache.sum(first, ncores), 1E-2);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        first[first.length - 1] += 1;
+        assertEquals(seqArraySum(first), cache.sum(first, ncores), 1E-2);
+        assertEquals(3, cache.getMisses());
+    }
+
+    /**
+     * Test that sums computed while another thread writes the array are not cached under the contents the array ends
+     * up with.
+     */
+    public void testCacheIgnoresSumsRacingWithWrites() throws InterruptedException {
+        final int ncores = getNCores();
+        final ReciprocalArraySumCache cache = new ReciprocalArraySumCache(4);
+        final double[] input = createArray(100_000);
+        final AtomicBoolean done = new AtomicBoolean();
+        final Thread writer = new Thread(() -> {
+            while (!done.get()) {
+                for (int i = 0; i < input.length; i += 997) {
+                    input[i] += 1;
+                }
+            }
+        });
+        writer.start();
+        for (int r = 0; r < 50; r++) {
+            cache.sum(input, ncores);
+        }
+        done.set(true);
+        writer.join();
+
+        assertEquals(seqArraySum(input), cache.sum(input, ncores), 1E-2);
+    }
+
+    /**
+     * Test that version-stamped lookups hit until the version changes, and that the least recently used entry is
+     * the one evicted once the cache is full.
+     */
+    public void testCacheVersionStampAndEviction() {
+        final int ncores = getNCores();
+        final ReciprocalArraySumCache cache = new ReciprocalArraySumCache(2);
+        final double[] a = createArray(100_000);
+        final double[] b = createArray(100_000);
+        final double[] c = createArray(100_000);
+
+        cache.sum(a, 1L, ncores);
+        cache.sum(a, 1L, ncores);
+        assertEquals(1, cache.getHits());
+        cache.sum(a, 2L, ncores);
+        assertEquals(2, cache.getMisses());
+
+        cache.clear();
+        cache.sum(a, 1L, ncores);
+        cache.sum(b, 1L, ncores);
+        cache.sum(a, 1L, ncores);
+        cache.sum(c, 1L, ncores);
+        assertEquals(2, cache.size());
+
+        final long missesBefore = cache.getMisses();
+        cache.sum(a, 1L, ncores);
+        assertEquals(missesBefore, cache.getMisses());
+        cache.sum(b, 1L, ncores);
+        assertEquals(missesBefore + 1, cache.getMisses());
+    }
+
+    /**
+     * Test the recursive implementation across thresholds, on both the shared pool and a reused caller pool, and
+     * check that repeated many-task calls no longer leave threads behind.
+     */
+    public void testParRecursiveArraySum() {
+        final double[] input = createArray(1_000_003);
+        final double correct = seqArraySum(input);
+
+        final ForkJoinPool pool = new ForkJoinPool(getNCores());
+        try {
+            for (int threshold : new int[] {1_000, ReciprocalArraySum.DEFAULT_THRESHOLD, input.length}) {
+                assertEquals(correct, ReciprocalArraySum.parRecursiveArraySum(input, threshold), 1E-2);
+                assertEquals(correct, ReciprocalArraySum.parRecursiveArraySum(input, threshold, pool), 1E-2);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        ReciprocalArraySum.parManyTaskArraySum(input, getNCores());
+        final int threadsBefore = Thread.activeCount();
+        for (int r = 0; r < REPEATS; r++) {
+            ReciprocalArraySum.parManyTaskArraySum(input, getNCores());
+        }
+        assertTrue("Repeated calls should not create new pools", Thread.activeCount() <= threadsBefore + 1);
+    }
+
+    /**
+     * Test that the unrolled kernel matches the reference loop, including lengths that are not a multiple of the
+     * unroll factor.
+     */
+    public void testSeqUnrolledArraySum() {
+        for (int n : new int[] {0, 1, 3, 5, 2_000_003}) {
+            final double[] input = createArray(n);
+            assertEquals("Mismatch for N = " + n, seqArraySum(input), ReciprocalArraySum.seqUnrolledArraySum(input),
+                    1E-6);
+        }
+    }
+
+    /**
+     * Test that the deterministic reduction is accurate and returns bit-identical results regardless of the
+     * parallelism of the pool it runs on.
+     */
+    public void testParDeterministicArraySum() {
+        final double[] input = createArray(10_000_019);
+        final double reference = ReciprocalArraySum.parDeterministicArraySum(input);
+        assertEquals(seqArraySum(input), reference, 1E-2);
+
+        for (int parallelism : new int[] {1, 2, 3, 8}) {
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                final double sum = ReciprocalArraySum.parDeterministicArraySum(input, pool);
+                assertEquals("Result changed with parallelism " + parallelism,
+                        Double.doubleToLongBits(reference), Double.doubleToLongBits(sum));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        assertEquals(0.0, ReciprocalArraySum.parDeterministicArraySum(new double[0]));
+    }
+
+    /**
+     * Test the memory-mapped file entry point, including a segment size small enough to force many mappings and a
+     * final partial segment.
+     */
+    public void testMappedFileArraySum() throws IOException {
+        final double[] input = createArray(1_000_003);
+        final Path file = Files.createTempFile("reciprocal", ".bin");
+        try {
+            final ByteBuffer bytes = ByteBuffer.allocate(input.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asDoubleBuffer().put(input);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+
+            final double correct = seqArraySum(input);
+            assertEquals(correct, ReciprocalArraySum.mappedFileArraySum(file), 1E-2);
+            assertEquals(correct, ReciprocalArraySum.mappedFileArraySum(file, 10_000, ForkJoinPool.commonPool(),
+                    64 * 1024), 1E-2);
+            assertEquals(correct, ReciprocalArraySum.mappedFileArraySum(file, 10_000, ForkJoinPool.commonPool(),
+                    1000 * Double.BYTES), 1E-2);
+            for (long segmentBytes : new long[] {0, 12, 1L << 31}) {
+                try {
+                    ReciprocalArraySum.mappedFileArraySum(file, 10_000, ForkJoinPool.commonPool(), segmentBytes);
+                    fail("Segment size " + segmentBytes + " should be rejected");
+                } catch (IllegalArgumentException expected) {
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test the adaptive granularity rules and that the adaptive sum reports its decision and computes the right
+     * result.
+     */
+    public void testParAdaptiveArraySum() {
+        assertEquals(1, AdaptiveGranularity.decide(1_000, 64, 1.0).getNumTasks());
+        assertEquals(20, AdaptiveGranularity.decide(1_000_000, 64, 1.0).getNumTasks());
+        assertEquals(64 * AdaptiveGranularity.OVERDECOMPOSITION,
+                AdaptiveGranularity.decide(1_000_000_000, 64, 1.0).getNumTasks());
+        assertEquals(1, AdaptiveGranularity.decide(0, 64, 1.0).getNumTasks());
+
+        final AdaptiveGranularity.Decision[] reported = new AdaptiveGranularity.Decision[1];
+        for (int n : new int[] {100, 2_000_000}) {
+            final double[] input = createArray(n);
+            final double sum = ReciprocalArraySum.parAdaptiveArraySum(input, decision -> reported[0] = decision);
+            assertEquals(seqArraySum(input), sum, 1E-2);
+            assertEquals(n, reported[0].getLength());
+            assertTrue(reported[0].getNumTasks() >= 1);
+            assertTrue(reported[0].getNumTasks() <= getNCores() * AdaptiveGranularity.OVERDECOMPOSITION);
+        }
+    }
 }
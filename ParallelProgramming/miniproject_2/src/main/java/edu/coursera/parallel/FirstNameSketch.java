@@ -0,0 +1,456 @@
+package edu.coursera.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A fixed-size summary of how often names occur, for finding the most common
+ * ones among more names than fit in memory. It combines two sketches:
+ *
+ * - a Count-Min sketch of depth x width counters, whose estimate of any
+ *   name's count is never too low and, with probability at least
+ *   1 - getDelta(), too high by at most getEpsilon() * total;
+ * - a Space-Saving summary tracking at most capacity candidate names, each
+ *   with an overestimated count and the most it may be overestimated by.
+ *
+ * An untracked name only displaces the least frequent candidate once its
+ * Count-Min estimate exceeds that candidate's count, which keeps rare names
+ * from churning the summary, and maintains the Space-Saving invariant that a
+ * name missing from a full summary occurred at most as often as its least
+ * frequent candidate. Reported bounds take the tighter upper bound of the
+ * two sketches.
+ *
+ * Both sketches are mergeable, so per-worker sketches can be filled
+ * independently by a parallel collect and folded together at the end; merging
+ * keeps the Space-Saving invariant. Memory depends only on capacity, width and
+ * depth, never on the number of names seen.
+ *
+ * Not thread-safe; null names are not supported.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class FirstNameSketch {
+    /**
+     * Default number of candidate names tracked.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+    /**
+     * Default number of counters per Count-Min row.
+     */
+    public static final int DEFAULT_WIDTH = 1 << 14;
+    /**
+     * Default number of Count-Min rows.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+    /**
+     * Most Count-Min rows supported.
+     */
+    private static final int MAX_DEPTH = 16;
+    /**
+     * Multipliers of the per-row multiply-shift hash functions.
+     */
+    private static final long[] HASH_MULTIPLIERS = new long[MAX_DEPTH];
+    /**
+     * Increments of the per-row multiply-shift hash functions.
+     */
+    private static final long[] HASH_INCREMENTS = new long[MAX_DEPTH];
+
+    static {
+        // Fixed seed, so that sketches built anywhere can be merged.
+        final SplittableRandom random = new SplittableRandom(0x5EED);
+        for (int row = 0; row < MAX_DEPTH; row++) {
+            HASH_MULTIPLIERS[row] = random.nextLong() | 1;
+            HASH_INCREMENTS[row] = random.nextLong();
+        }
+    }
+
+    /**
+     * Most candidate names tracked.
+     */
+    private final int capacity;
+    /**
+     * log2 of the number of counters per Count-Min row.
+     */
+    private final int widthBits;
+    /**
+     * Count-Min counters, row after row.
+     */
+    private final long[] sketch;
+    /**
+     * Number of Count-Min rows.
+     */
+    private final int depth;
+    /**
+     * Number of names added.
+     */
+    private long total;
+
+    /**
+     * Slot of each tracked candidate.
+     */
+    private final Map<String, Integer> slots;
+    /**
+     * Candidate name in each slot.
+     */
+    private final String[] names;
+    /**
+     * Overestimated count of the candidate in each slot.
+     */
+    private final long[] counts;
+    /**
+     * Most the count in each slot may be overestimated by.
+     */
+    private final long[] errors;
+    /**
+     * Min-heap of occupied slots ordered by count.
+     */
+    private final int[] heap;
+    /**
+     * Position of each slot in the heap.
+     */
+    private final int[] heapPositions;
+    /**
+     * Number of tracked candidates.
+     */
+    private int size;
+
+    /**
+     * Create a sketch with the default dimensions.
+     */
+    public FirstNameSketch() {
+        this(DEFAULT_CAPACITY, DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Create a sketch.
+     *
+     * @param setCapacity Most candidate names tracked
+     * @param width Counters per Count-Min row, a power of two
+     * @param setDepth Count-Min rows, at most 16
+     */
+    public FirstNameSketch(final int setCapacity, final int width, final int setDepth) {
+        if (setCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + setCapacity);
+        }
+        if (width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Width must be a power of two, got " + width);
+        }
+        if (setDepth <= 0 || setDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH + ", got " + setDepth);
+        }
+        this.capacity = setCapacity;
+        this.widthBits = Integer.numberOfTrailingZeros(width);
+        this.depth = setDepth;
+        this.sketch = new long[setDepth * width];
+        this.slots = new HashMap<>(setCapacity * 2);
+        this.names = new String[setCapacity];
+        this.counts = new long[setCapacity];
+        this.errors = new long[setCapacity];
+        this.heap = new int[setCapacity];
+        this.heapPositions = new int[setCapacity];
+    }
+
+    /**
+     * Count one occurrence of a name.
+     *
+     * @param name Name to count
+     */
+    public void add(final String name) {
+        total++;
+        final int h = name.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, ++sketch[counter(row, h)]);
+        }
+
+        final Integer slot = slots.get(name);
+        if (slot != null) {
+            counts[slot]++;
+            siftDown(heapPositions[slot]);
+        } else if (size < capacity) {
+            track(name, estimate, estimate - 1);
+        } else if (estimate > counts[heap[0]]) {
+            // Evict the least frequent candidate. The newcomer occurred at
+            // most estimate times so far, of which only this one is certain.
+            final int min = heap[0];
+            slots.remove(names[min]);
+            slots.put(name, min);
+            names[min] = name;
+            counts[min] = estimate;
+            errors[min] = estimate - 1;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Fold another sketch with the same dimensions into this one.
+     *
+     * @param other Sketch to merge, left unchanged
+     */
+    public void merge(final FirstNameSketch other) {
+        if (other.capacity != capacity || other.widthBits != widthBits || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches with different dimensions");
+        }
+        total += other.total;
+        for (int i = 0; i < sketch.length; i++) {
+            sketch[i] += other.sketch[i];
+        }
+
+        // A name missing from a full summary occurred at most its minimum
+        // count times there, so that minimum stands in for both its count
+        // and its error.
+        final long thisMin = minCount();
+        final long otherMin = other.minCount();
+        final Map<String, long[]> merged = new HashMap<>((size + other.size) * 2);
+        for (int slot = 0; slot < size; slot++) {
+            merged.put(names[slot], new long[] {counts[slot] + otherMin, errors[slot] + otherMin});
+        }
+        for (int slot = 0; slot < other.size; slot++) {
+            final long[] entry = merged.get(other.names[slot]);
+            if (entry != null) {
+                entry[0] += other.counts[slot] - otherMin;
+                entry[1] += other.errors[slot] - otherMin;
+            } else {
+                merged.put(other.names[slot], new long[] {
+                    other.counts[slot] + thisMin, other.errors[slot] + thisMin});
+            }
+        }
+
+        final List<Map.Entry<String, long[]>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed());
+        slots.clear();
+        size = 0;
+        for (Map.Entry<String, long[]> entry : entries.subList(0, Math.min(capacity, entries.size()))) {
+            track(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Get the number of names added, including those added to merged
+     * sketches.
+     * @return Total count
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the relative error of Count-Min estimates: an estimate exceeds the
+     * true count by at most getEpsilon() * getTotal() with probability at
+     * least 1 - getDelta().
+     * @return e / width
+     */
+    public double getEpsilon() {
+        return Math.E / (1 << widthBits);
+    }
+
+    /**
+     * Get the probability that a Count-Min estimate exceeds its error bound.
+     * @return e^-depth
+     */
+    public double getDelta() {
+        return Math.exp(-depth);
+    }
+
+    /**
+     * Estimate how many times a name occurred. The estimate is never too
+     * low.
+     *
+     * @param name Name to look up
+     * @return Upper bound on the name's count
+     */
+    public long estimate(final String name) {
+        final Integer slot = slots.get(name);
+        long estimate = slot != null ? counts[slot] : minCount();
+        final int h = name.hashCode();
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, sketch[counter(row, h)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Get the names most likely to be the k most common, most common first.
+     * Any name left out occurred at most as often as the least frequent
+     * tracked candidate.
+     *
+     * @param k Number of names wanted, at most the capacity
+     * @return Up to k names with bounds on their counts
+     */
+    public List<Estimate> topK(final int k) {
+        if (k <= 0 || k > capacity) {
+            throw new IllegalArgumentException("k must be between 1 and " + capacity + ", got " + k);
+        }
+        final Integer[] bySlot = new Integer[size];
+        for (int slot = 0; slot < size; slot++) {
+            bySlot[slot] = slot;
+        }
+        Arrays.sort(bySlot, Comparator.comparingLong((Integer slot) -> counts[slot]).reversed());
+
+        final List<Estimate> top = new ArrayList<>(Math.min(k, size));
+        for (int i = 0; i < Math.min(k, size); i++) {
+            final int slot = bySlot[i];
+            top.add(new Estimate(names[slot], counts[slot] - errors[slot], estimate(names[slot])));
+        }
+        return top;
+    }
+
+    /**
+     * Smallest count a tracked candidate can have: 0 while there is room
+     * for more candidates, otherwise the count of the least frequent one.
+     * @return Upper bound on the count of any untracked name
+     */
+    private long minCount() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /**
+     * Start tracking a candidate in the next free slot.
+     *
+     * @param name Candidate name
+     * @param count Its overestimated count
+     * @param error Most the count may be overestimated by
+     */
+    private void track(final String name, final long count, final long error) {
+        final int slot = size++;
+        slots.put(name, slot);
+        names[slot] = name;
+        counts[slot] = count;
+        errors[slot] = error;
+        heap[slot] = slot;
+        heapPositions[slot] = slot;
+        siftUp(slot);
+    }
+
+    /**
+     * Index of the counter a hash code maps to in a Count-Min row.
+     *
+     * @param row Count-Min row
+     * @param h Hash code of the name
+     * @return Index into sketch
+     */
+    private int counter(final int row, final int h) {
+        final long mixed = HASH_MULTIPLIERS[row] * h + HASH_INCREMENTS[row];
+        // Take the top widthBits bits in two shifts, since a single shift by
+        // Long.SIZE would be taken mod 64 and keep all bits when width is 1.
+        return (row << widthBits) + (int) ((mixed >>> 1) >>> (Long.SIZE - 1 - widthBits));
+    }
+
+    /**
+     * Move the slot at a heap position towards the root while its count is
+     * smaller than its parent's.
+     *
+     * @param position Heap position
+     */
+    private void siftUp(final int position) {
+        int child = position;
+        while (child > 0) {
+            final int parent = (child - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[heap[child]]) {
+                break;
+            }
+            swap(parent, child);
+            child = parent;
+        }
+    }
+
+    /**
+     * Move the slot at a heap position towards the leaves while its count
+     * is larger than a child's.
+     *
+     * @param position Heap position
+     */
+    private void siftDown(final int position) {
+        int parent = position;
+        while (true) {
+            final int left = 2 * parent + 1;
+            if (left >= size) {
+                return;
+            }
+            final int right = left + 1;
+            final int smaller = right < size && counts[heap[right]] < counts[heap[left]] ? right : left;
+            if (counts[heap[parent]] <= counts[heap[smaller]]) {
+                return;
+            }
+            swap(parent, smaller);
+            parent = smaller;
+        }
+    }
+
+    /**
+     * Swap two heap positions.
+     *
+     * @param a First position
+     * @param b Second position
+     */
+    private void swap(final int a, final int b) {
+        final int slotA = heap[a];
+        heap[a] = heap[b];
+        heap[b] = slotA;
+        heapPositions[heap[a]] = a;
+        heapPositions[heap[b]] = b;
+    }
+
+    /**
+     * A name with bounds on how often it occurred.
+     */
+    public static final class Estimate {
+        /**
+         * The name.
+         */
+        private final String name;
+        /**
+         * Guaranteed lower bound on its count.
+         */
+        private final long lowerBound;
+        /**
+         * Guaranteed upper bound on its count.
+         */
+        private final long upperBound;
+
+        /**
+         * Constructor.
+         * @param setName The name
+         * @param setLowerBound Lower bound on its count
+         * @param setUpperBound Upper bound on its count
+         */
+        Estimate(final String setName, final long setLowerBound, final long setUpperBound) {
+            this.name = setName;
+            this.lowerBound = setLowerBound;
+            this.upperBound = setUpperBound;
+        }
+
+        /**
+         * Get the name.
+         * @return The name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get a count the name is known to have reached.
+         * @return Lower bound on its count
+         */
+        public long getLowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * Get a count the name is known not to exceed.
+         * @return Upper bound on its count
+         */
+        public long getUpperBound() {
+            return upperBound;
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + lowerBound + ", " + upperBound + "]";
+        }
+    }
+}
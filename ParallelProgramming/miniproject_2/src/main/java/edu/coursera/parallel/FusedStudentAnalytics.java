@@ -0,0 +1,216 @@
+package edu.coursera.parallel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Computes any number of registered aggregations over a Student[] in a single
+ * parallel pass, so each student is loaded from memory once per refresh no
+ * matter how many queries are asked of it. The array is walked in blocks small
+ * enough to stay in cache, and every aggregation folds in a whole block before
+ * moving to the next one.
+ *
+ * Register every aggregation first, keeping the returned handles, then call
+ * run as often as needed and read each answer from the result through its
+ * handle. Registering is not thread-safe; run may be called concurrently once
+ * registration is done.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class FusedStudentAnalytics {
+    /**
+     * Number of students every aggregation folds in at a time.
+     */
+    private static final int BLOCK = 1024;
+
+    /**
+     * Registered aggregations, indexed by handle.
+     */
+    private final List<StudentAggregation<Object, Object>> aggregations = new ArrayList<>();
+
+    /**
+     * Register an aggregation to be computed by every subsequent run.
+     *
+     * @param aggregation Aggregation to compute
+     * @param <R> Result type of the aggregation
+     * @return Handle to read the aggregation's answer from a result
+     */
+    @SuppressWarnings("unchecked")
+    public <R> Handle<R> register(final StudentAggregation<?, R> aggregation) {
+        aggregations.add((StudentAggregation<Object, Object>) aggregation);
+        return new Handle<>(this, aggregations.size() - 1);
+    }
+
+    /**
+     * Compute every registered aggregation in one parallel pass over the
+     * students.
+     *
+     * @param studentArray Student data for the class.
+     * @return Answers to every registered aggregation
+     */
+    public Result run(final Student[] studentArray) {
+        final int n = aggregations.size();
+        final int nBlocks = (studentArray.length + BLOCK - 1) / BLOCK;
+        final Object[] accumulators = IntStream.range(0, nBlocks).parallel().collect(
+                this::newAccumulators,
+                (accs, block) -> {
+                    final int start = block * BLOCK;
+                    final int end = Math.min(start + BLOCK, studentArray.length);
+                    for (int k = 0; k < n; k++) {
+                        aggregations.get(k).accumulateRange(accs[k], studentArray, start, end);
+                    }
+                },
+                this::combineAccumulators
+        );
+        return finish(accumulators);
+    }
+
+    /**
+     * Compute every registered aggregation in one parallel pass over a CSV
+     * file of students, as written by StudentCsv, without materializing a
+     * Student[]. Chunks of the file are memory-mapped and parsed in parallel,
+     * and each block of parsed students is folded into the aggregations and
+     * then dropped, so heap use does not grow with the file.
+     *
+     * Rows passed to the aggregations are only unique within a block, so
+     * aggregations that break ties by row, like the most common name, may
+     * pick a different one of several equally good answers than they would
+     * for an array.
+     *
+     * @param file CSV file of students
+     * @return Answers to every registered aggregation
+     * @throws IOException If the file cannot be read or a record is malformed
+     */
+    public Result run(final Path file) throws IOException {
+        final int n = aggregations.size();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final Object[] accumulators = IntStream.range(0, StudentCsv.chunkCount(size, StudentCsv.CHUNK_BYTES))
+                    .parallel().collect(
+                    this::newAccumulators,
+                    (accs, chunk) -> {
+                        try {
+                            StudentCsv.parseChunk(channel, size, chunk, StudentCsv.CHUNK_BYTES,
+                                    new Student[BLOCK], (block, count) -> {
+                                        for (int k = 0; k < n; k++) {
+                                            aggregations.get(k).accumulateRange(accs[k], block, 0, count);
+                                        }
+                                    });
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    },
+                    this::combineAccumulators
+            );
+            return finish(accumulators);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Fold one set of accumulators into another.
+     * @param into Accumulators to update
+     * @param from Accumulators to fold in
+     */
+    private void combineAccumulators(final Object[] into, final Object[] from) {
+        for (int k = 0; k < into.length; k++) {
+            aggregations.get(k).combine(into[k], from[k]);
+        }
+    }
+
+    /**
+     * Turn final accumulators into a result.
+     * @param accumulators Accumulators by handle index
+     * @return Answers to every registered aggregation
+     */
+    private Result finish(final Object[] accumulators) {
+        final Object[] answers = new Object[accumulators.length];
+        for (int k = 0; k < answers.length; k++) {
+            answers[k] = aggregations.get(k).finish(accumulators[k]);
+        }
+        return new Result(this, answers);
+    }
+
+    /**
+     * Create one empty accumulator per registered aggregation.
+     * @return Accumulators by handle index
+     */
+    private Object[] newAccumulators() {
+        final Object[] accs = new Object[aggregations.size()];
+        for (int k = 0; k < accs.length; k++) {
+            accs[k] = aggregations.get(k).newAccumulator();
+        }
+        return accs;
+    }
+
+    /**
+     * Typed reference to a registered aggregation.
+     *
+     * @param <R> Result type of the aggregation
+     */
+    public static final class Handle<R> {
+        /**
+         * Engine the aggregation was registered with.
+         */
+        private final FusedStudentAnalytics owner;
+        /**
+         * Position of the aggregation in the engine.
+         */
+        private final int index;
+
+        /**
+         * Constructor.
+         * @param setOwner Engine the aggregation was registered with
+         * @param setIndex Position of the aggregation in the engine
+         */
+        Handle(final FusedStudentAnalytics setOwner, final int setIndex) {
+            this.owner = setOwner;
+            this.index = setIndex;
+        }
+    }
+
+    /**
+     * Answers to every aggregation registered at the time of a run.
+     */
+    public static final class Result {
+        /**
+         * Engine that produced this result.
+         */
+        private final FusedStudentAnalytics owner;
+        /**
+         * Answers by handle index.
+         */
+        private final Object[] answers;
+
+        /**
+         * Constructor.
+         * @param setOwner Engine that produced this result
+         * @param setAnswers Answers by handle index
+         */
+        Result(final FusedStudentAnalytics setOwner, final Object[] setAnswers) {
+            this.owner = setOwner;
+            this.answers = setAnswers;
+        }
+
+        /**
+         * Get the answer to one aggregation.
+         *
+         * @param handle Handle returned when registering the aggregation
+         * @param <R> Result type of the aggregation
+         * @return The aggregation's answer
+         */
+        @SuppressWarnings("unchecked")
+        public <R> R get(final Handle<R> handle) {
+            if (handle.owner != owner || handle.index >= answers.length) {
+                throw new IllegalArgumentException("Handle was not registered before this result was computed");
+            }
+            return (R) answers[handle.index];
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package edu.coursera.parallel;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps the answers to the StudentAnalytics queries up to date as students are
+ * inserted, deleted and updated, so that reading an answer costs a pass over a
+ * fixed number of shards instead of a pass over every student.
+ *
+ * Students are spread over shards by the hash of their first name. Each shard
+ * has its own lock and holds the age sum, enrolled count and failed count of
+ * its students, together with the first name frequencies of its inactive
+ * students, so a write locks one shard and writers working on different names
+ * mostly proceed in parallel. Name frequencies are kept in count buckets:
+ * every name sits in the bucket of its current count and the highest
+ * non-empty bucket is tracked, so incrementing or decrementing a name and
+ * finding the most common one in a shard are all O(1).
+ *
+ * All methods may be called concurrently. Every write bumps its shard's
+ * version twice, once before and once after changing it. A read collects the
+ * answer and version of every shard and then checks that no version changed,
+ * which makes the answer that of a single moment between the two passes;
+ * after a few failed attempts it locks every shard instead. Each query's
+ * answer is therefore exact as of some point during the read, but the three
+ * queries are separate reads, and update is a delete followed by an insert,
+ * which a read may fall between.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class IncrementalStudentAnalytics {
+    /**
+     * Optimistic attempts a read makes before locking every shard.
+     */
+    private static final int OPTIMISTIC_READS = 4;
+
+    /**
+     * Shards, a power of two of them.
+     */
+    private final Shard[] shards;
+
+    /**
+     * Create an empty view.
+     */
+    public IncrementalStudentAnalytics() {
+        final int count = Integer.highestOneBit(Math.max(1, 4 * Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Create a view of an initial set of students, loaded in one parallel
+     * pass.
+     *
+     * @param studentArray Student data for the class.
+     */
+    public IncrementalStudentAnalytics(final Student[] studentArray) {
+        this();
+        final Load load = IntStream.range(0, studentArray.length).parallel().collect(
+                () -> new Load(shards.length),
+                (acc, i) -> acc.add(studentArray[i], i, shardIndex(studentArray[i])),
+                Load::merge);
+        for (int i = 0; i < shards.length; i++) {
+            final Shard shard = shards[i];
+            shard.lock.lock();
+            try {
+                shard.version++;
+                shard.enrolledAgeSum += load.enrolledAgeSum[i];
+                shard.enrolledCount += load.enrolledCount[i];
+                shard.failedOlderThan20Count += load.failedOlderThan20Count[i];
+                shard.version++;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        load.names.forEach((name, occurrences) -> {
+            final Shard shard = shards[shardIndex(name)];
+            shard.lock.lock();
+            try {
+                shard.version++;
+                shard.inactiveFirstNames.add(name, occurrences);
+                shard.version++;
+            } finally {
+                shard.lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Add a student.
+     *
+     * @param student Student to add
+     */
+    public void insert(final Student student) {
+        final Shard shard = shards[shardIndex(student)];
+        shard.lock.lock();
+        try {
+            shard.version++;
+            if (!student.checkIsCurrent()) {
+                shard.inactiveFirstNames.add(student.getFirstName(), 1);
+            }
+            shard.addNumeric(student, 1);
+            shard.version++;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a student previously added, or one with equal attributes.
+     *
+     * @param student Student to remove
+     * @throws IllegalArgumentException if the student is inactive and no
+     *         inactive student with its first name is present
+     */
+    public void delete(final Student student) {
+        final Shard shard = shards[shardIndex(student)];
+        shard.lock.lock();
+        try {
+            if (!student.checkIsCurrent()) {
+                shard.inactiveFirstNames.checkPresent(student.getFirstName());
+            }
+            shard.version++;
+            if (!student.checkIsCurrent()) {
+                shard.inactiveFirstNames.remove(student.getFirstName());
+            }
+            shard.addNumeric(student, -1);
+            shard.version++;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Replace a student previously added with a new version of it.
+     *
+     * @param before Student as previously added
+     * @param after Student as it should now be counted
+     * @throws IllegalArgumentException if before could not be deleted
+     */
+    public void update(final Student before, final Student after) {
+        delete(before);
+        insert(after);
+    }
+
+    /**
+     * Get the average age of currently enrolled students.
+     * @return Average age of enrolled students, 0 if there are none
+     */
+    public double averageAgeOfEnrolledStudents() {
+        final double[] sums = new double[shards.length];
+        final long[] counts = new long[shards.length];
+        read(shard -> {
+            sums[shard] = shards[shard].enrolledAgeSum;
+            counts[shard] = shards[shard].enrolledCount;
+        });
+        double sum = 0;
+        long count = 0;
+        for (int i = 0; i < shards.length; i++) {
+            sum += sums[i];
+            count += counts[i];
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Get the most common first name of inactive students.
+     * @return One of the most common first names of inactive students, or
+     *         null if there are none
+     */
+    public String mostCommonFirstNameOfInactiveStudents() {
+        final String[] names = new String[shards.length];
+        final int[] maxCounts = new int[shards.length];
+        read(shard -> {
+            shards[shard].lock.lock();
+            try {
+                names[shard] = shards[shard].inactiveFirstNames.mostCommon();
+                maxCounts[shard] = shards[shard].inactiveFirstNames.maxCount;
+            } finally {
+                shards[shard].lock.unlock();
+            }
+        });
+        String best = null;
+        int bestCount = 0;
+        for (int i = 0; i < shards.length; i++) {
+            if (maxCounts[i] > bestCount) {
+                best = names[i];
+                bestCount = maxCounts[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the number of students who are inactive, older than 20 and have a
+     * failing grade.
+     * @return Number of failed students older than 20
+     */
+    public int countNumberOfFailedStudentsOlderThan20() {
+        final long[] counts = new long[shards.length];
+        read(shard -> counts[shard] = shards[shard].failedOlderThan20Count);
+        long count = 0;
+        for (long c : counts) {
+            count += c;
+        }
+        return (int) count;
+    }
+
+    /**
+     * Read every shard so that the values read form a snapshot of a single
+     * moment. First tries to read each shard between two passes over the
+     * versions, retrying if a write was in progress or completed in between;
+     * then falls back to reading with every shard locked.
+     *
+     * @param reader Reads the fields of the shard with the given index into
+     *        the caller's arrays, and may be called again for a retry
+     */
+    private void read(final IntConsumer reader) {
+        final long[] versions = new long[shards.length];
+        for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+            boolean consistent = true;
+            for (int i = 0; i < shards.length && consistent; i++) {
+                versions[i] = shards[i].version;
+                consistent = versions[i] % 2 == 0;
+                reader.accept(i);
+            }
+            for (int i = 0; i < shards.length && consistent; i++) {
+                consistent = shards[i].version == versions[i];
+            }
+            if (consistent) {
+                return;
+            }
+        }
+        for (Shard shard : shards) {
+            shard.lock.lock();
+        }
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                reader.accept(i);
+            }
+        } finally {
+            for (Shard shard : shards) {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Find the shard of a student.
+     *
+     * @param student Student
+     * @return Index of the shard holding the student
+     */
+    private int shardIndex(final Student student) {
+        return shardIndex(student.getFirstName());
+    }
+
+    /**
+     * Find the shard of a first name.
+     *
+     * @param name First name
+     * @return Index of the shard holding students with this name
+     */
+    private int shardIndex(final String name) {
+        final int h = name.hashCode();
+        return (h ^ (h >>> 16)) & (shards.length - 1);
+    }
+
+    /**
+     * One shard of the view. Every field is written only with the lock held,
+     * and between two increments of version. The numeric fields are volatile
+     * so that optimistic reads see them in order with version.
+     */
+    private static final class Shard {
+        /**
+         * Lock guarding writes to this shard.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        /**
+         * Number of writes started plus number of writes finished, odd while
+         * a write is in progress.
+         */
+        private volatile long version;
+        /**
+         * Sum of the ages of enrolled students.
+         */
+        private volatile double enrolledAgeSum;
+        /**
+         * Number of enrolled students.
+         */
+        private volatile long enrolledCount;
+        /**
+         * Number of inactive students older than 20 with a failing grade.
+         */
+        private volatile long failedOlderThan20Count;
+        /**
+         * First name frequencies of inactive students, only read with the
+         * lock held.
+         */
+        private final NameFrequencies inactiveFirstNames = new NameFrequencies();
+
+        /**
+         * Apply a student's contribution to the average age and failed count.
+         *
+         * @param s Student
+         * @param sign 1 to add the student, -1 to remove it
+         */
+        private void addNumeric(final Student s, final int sign) {
+            if (s.checkIsCurrent()) {
+                enrolledAgeSum += sign * s.getAge();
+                enrolledCount += sign;
+            } else if (s.getAge() > 20 && s.getGrade() < 65) {
+                failedOlderThan20Count += sign;
+            }
+        }
+    }
+
+    /**
+     * Per-shard totals and name counts of the initial students, filled by one
+     * worker of the parallel load and merged pairwise.
+     */
+    private static final class Load {
+        /**
+         * Sum of the ages of enrolled students, per shard.
+         */
+        private final double[] enrolledAgeSum;
+        /**
+         * Number of enrolled students, per shard.
+         */
+        private final long[] enrolledCount;
+        /**
+         * Number of failed inactive students older than 20, per shard.
+         */
+        private final long[] failedOlderThan20Count;
+        /**
+         * First names of inactive students.
+         */
+        private final StringCounter names = new StringCounter();
+
+        /**
+         * Constructor.
+         * @param setShards Number of shards
+         */
+        Load(final int setShards) {
+            this.enrolledAgeSum = new double[setShards];
+            this.enrolledCount = new long[setShards];
+            this.failedOlderThan20Count = new long[setShards];
+        }
+
+        /**
+         * Count one student.
+         *
+         * @param s Student
+         * @param row Position of the student in the initial array
+         * @param shard Shard of the student
+         */
+        void add(final Student s, final int row, final int shard) {
+            if (s.checkIsCurrent()) {
+                enrolledAgeSum[shard] += s.getAge();
+                enrolledCount[shard]++;
+            } else {
+                names.add(s.getFirstName(), row);
+                if (s.getAge() > 20 && s.getGrade() < 65) {
+                    failedOlderThan20Count[shard]++;
+                }
+            }
+        }
+
+        /**
+         * Merge the counts of another worker into this one.
+         *
+         * @param other Counts to merge
+         */
+        void merge(final Load other) {
+            for (int i = 0; i < enrolledAgeSum.length; i++) {
+                enrolledAgeSum[i] += other.enrolledAgeSum[i];
+                enrolledCount[i] += other.enrolledCount[i];
+                failedOlderThan20Count[i] += other.failedOlderThan20Count[i];
+            }
+            names.merge(other.names);
+        }
+    }
+
+    /**
+     * Name counts bucketed by count, with the highest non-empty bucket
+     * tracked. Not thread-safe.
+     */
+    private static final class NameFrequencies {
+        /**
+         * Current count of every name with a non-zero count.
+         */
+        private final Map<String, Integer> counts = new HashMap<>();
+        /**
+         * Names by count, only for counts that some name has.
+         */
+        private final Map<Integer, LinkedHashSet<String>> buckets = new HashMap<>();
+        /**
+         * Highest count of any name, 0 if there are no names.
+         */
+        private int maxCount;
+
+        /**
+         * Add occurrences of a name.
+         *
+         * @param name Name to count
+         * @param occurrences Number of occurrences to add, positive
+         */
+        void add(final String name, final int occurrences) {
+            final int count = counts.getOrDefault(name, 0);
+            if (count > 0) {
+                leave(name, count);
+            }
+            final int newCount = count + occurrences;
+            counts.put(name, newCount);
+            buckets.computeIfAbsent(newCount, c -> new LinkedHashSet<>()).add(name);
+            if (newCount > maxCount) {
+                maxCount = newCount;
+            }
+        }
+
+        /**
+         * Check that a name has at least one occurrence to remove.
+         *
+         * @param name Name to check
+         * @throws IllegalArgumentException if the name has no occurrences
+         */
+        void checkPresent(final String name) {
+            if (!counts.containsKey(name)) {
+                throw new IllegalArgumentException("No inactive student named " + name + " to delete");
+            }
+        }
+
+        /**
+         * Remove one occurrence of a name, which must be present.
+         *
+         * @param name Name to uncount
+         */
+        void remove(final String name) {
+            final Integer count = counts.get(name);
+            leave(name, count);
+            if (count == 1) {
+                counts.remove(name);
+            } else {
+                counts.put(name, count - 1);
+                buckets.computeIfAbsent(count - 1, c -> new LinkedHashSet<>()).add(name);
+            }
+            // A name moved from maxCount down to maxCount - 1, so if maxCount
+            // is now empty the new maximum is exactly one lower.
+            if (count == maxCount && !buckets.containsKey(count)) {
+                maxCount--;
+            }
+        }
+
+        /**
+         * Find a name with the highest count.
+         * @return Most common name, or null if there are none
+         */
+        String mostCommon() {
+            if (maxCount == 0) {
+                return null;
+            }
+            return buckets.get(maxCount).iterator().next();
+        }
+
+        /**
+         * Take a name out of the bucket for its count, dropping the bucket if
+         * it becomes empty.
+         *
+         * @param name Name to take out
+         * @param count Its current count
+         */
+        private void leave(final String name, final int count) {
+            final LinkedHashSet<String> bucket = buckets.get(count);
+            bucket.remove(name);
+            if (bucket.isEmpty()) {
+                buckets.remove(count);
+            }
+        }
+    }
+}
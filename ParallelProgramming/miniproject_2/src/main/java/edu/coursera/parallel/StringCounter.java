@@ -0,0 +1,213 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An open-addressed hash table counting occurrences of strings, meant to be
+ * used as the mutable container of a parallel stream collect: each worker
+ * fills its own counter and counters are merged pairwise at the end.
+ * Counting an already present string allocates nothing.
+ *
+ * Besides the count, the counter remembers the smallest row at which each
+ * string was seen, which is what mostCommon needs to reproduce the tie
+ * breaking of the imperative HashMap-based implementation.
+ *
+ * Not thread-safe; null strings are not supported.
+ */
+final class StringCounter {
+    /**
+     * Initial number of slots, a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Key in each slot, null for an empty slot.
+     */
+    private String[] keys;
+    /**
+     * Count of the key in each slot.
+     */
+    private int[] counts;
+    /**
+     * Smallest row at which the key in each slot was seen.
+     */
+    private int[] firstRows;
+    /**
+     * Number of occupied slots.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    StringCounter() {
+        keys = new String[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+        firstRows = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Count one occurrence of key, seen at the given row.
+     *
+     * @param key String to count
+     * @param row Row the string was seen at
+     */
+    void add(final String key, final int row) {
+        add(key, 1, row);
+    }
+
+    /**
+     * Fold the counts of another counter into this one.
+     *
+     * @param other Counter to merge, left unchanged
+     */
+    void merge(final StringCounter other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != null) {
+                add(other.keys[slot], other.counts[slot], other.firstRows[slot]);
+            }
+        }
+    }
+
+    /**
+     * Get the number of times key has been counted.
+     *
+     * @param key String to look up
+     * @return Its count, 0 if never seen
+     */
+    int get(final String key) {
+        final int mask = keys.length - 1;
+        for (int slot = spread(key.hashCode()) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(key)) {
+                return counts[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the number of distinct strings counted.
+     * @return Number of distinct strings
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Pass every distinct string and its count to an action, in no particular
+     * order.
+     *
+     * @param action Action to call with each string and its count
+     */
+    void forEach(final ObjIntConsumer<String> action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                action.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Find the most frequent string. Among equally frequent strings this
+     * picks the same one as counting into a HashMap row by row and taking the
+     * first maximum in its iteration order, because the HashMap built here
+     * receives the same keys in the same order of first appearance.
+     *
+     * @return The most frequent string, or null if nothing was counted
+     */
+    String mostCommon() {
+        final long[] byFirstRow = new long[size];
+        int next = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                byFirstRow[next++] = ((long) firstRows[slot] << 32) | slot;
+            }
+        }
+        Arrays.sort(byFirstRow);
+
+        final Map<String, Integer> nameCounts = new HashMap<>();
+        for (long entry : byFirstRow) {
+            final int slot = (int) entry;
+            nameCounts.put(keys[slot], counts[slot]);
+        }
+
+        String mostCommon = null;
+        int mostCommonCount = -1;
+        for (Map.Entry<String, Integer> entry : nameCounts.entrySet()) {
+            if (mostCommon == null || entry.getValue() > mostCommonCount) {
+                mostCommon = entry.getKey();
+                mostCommonCount = entry.getValue();
+            }
+        }
+        return mostCommon;
+    }
+
+    /**
+     * Add count occurrences of key, first seen at row.
+     *
+     * @param key String to count
+     * @param count Number of occurrences
+     * @param row Smallest row the occurrences were seen at
+     */
+    private void add(final String key, final int count, final int row) {
+        final int mask = keys.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                counts[slot] += count;
+                if (row < firstRows[slot]) {
+                    firstRows[slot] = row;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        counts[slot] = count;
+        firstRows[slot] = row;
+        size++;
+        if (size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Double the number of slots, keeping the load factor at most one half.
+     */
+    private void resize() {
+        final String[] oldKeys = keys;
+        final int[] oldCounts = counts;
+        final int[] oldFirstRows = firstRows;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        firstRows = new int[oldKeys.length * 2];
+
+        final int mask = keys.length - 1;
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldKeys[old] != null) {
+                int slot = spread(oldKeys[old].hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[old];
+                counts[slot] = oldCounts[old];
+                firstRows[slot] = oldFirstRows[old];
+            }
+        }
+    }
+
+    /**
+     * Mix the high bits of a hash code into the low bits used for indexing.
+     *
+     * @param h Hash code
+     * @return Spread hash code
+     */
+    private static int spread(final int h) {
+        final int x = h * 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+}
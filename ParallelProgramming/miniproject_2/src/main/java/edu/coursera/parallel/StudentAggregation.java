@@ -0,0 +1,238 @@
+package edu.coursera.parallel;
+
+import java.util.List;
+
+/**
+ * An aggregation over students that can be computed in parallel: every
+ * worker folds its students into its own mutable accumulator, accumulators
+ * are combined pairwise, and the final accumulator is turned into a result.
+ *
+ * @param <A> Mutable accumulator type
+ * @param <R> Result type
+ */
+public interface StudentAggregation<A, R> {
+    /**
+     * Create an empty accumulator.
+     * @return A new accumulator
+     */
+    A newAccumulator();
+
+    /**
+     * Fold one student into an accumulator.
+     *
+     * @param acc Accumulator to update
+     * @param student Student to fold in
+     * @param row Index of the student in the input array
+     */
+    void accumulate(A acc, Student student, int row);
+
+    /**
+     * Fold a contiguous range of students into an accumulator. Implementations
+     * may override this with their own loop so that the per-student work is
+     * not a megamorphic call.
+     *
+     * @param acc Accumulator to update
+     * @param studentArray Student data for the class.
+     * @param startInclusive First row to fold in
+     * @param endExclusive First row past the range
+     */
+    default void accumulateRange(
+            final A acc,
+            final Student[] studentArray,
+            final int startInclusive,
+            final int endExclusive
+    ) {
+        for (int row = startInclusive; row < endExclusive; row++) {
+            accumulate(acc, studentArray[row], row);
+        }
+    }
+
+    /**
+     * Fold the contents of one accumulator into another.
+     *
+     * @param into Accumulator to update
+     * @param from Accumulator to fold in, not used afterwards
+     */
+    void combine(A into, A from);
+
+    /**
+     * Turn a complete accumulator into the result.
+     *
+     * @param acc Accumulator holding every student
+     * @return The result of the aggregation
+     */
+    R finish(A acc);
+
+    /**
+     * The average age of all actively enrolled students, or 0 if there are
+     * none, as in averageAgeOfEnrolledStudentsParallelStream.
+     *
+     * @return Average age aggregation
+     */
+    static StudentAggregation<double[], Double> averageAgeOfEnrolledStudents() {
+        return new StudentAggregation<double[], Double>() {
+            @Override
+            public double[] newAccumulator() {
+                // { age sum, enrolled count }
+                return new double[2];
+            }
+
+            @Override
+            public void accumulate(final double[] acc, final Student student, final int row) {
+                if (student.checkIsCurrent()) {
+                    acc[0] += student.getAge();
+                    acc[1]++;
+                }
+            }
+
+            @Override
+            public void accumulateRange(final double[] acc, final Student[] studentArray,
+                    final int startInclusive, final int endExclusive) {
+                double ageSum = 0;
+                int count = 0;
+                for (int row = startInclusive; row < endExclusive; row++) {
+                    if (studentArray[row].checkIsCurrent()) {
+                        ageSum += studentArray[row].getAge();
+                        count++;
+                    }
+                }
+                acc[0] += ageSum;
+                acc[1] += count;
+            }
+
+            @Override
+            public void combine(final double[] into, final double[] from) {
+                into[0] += from[0];
+                into[1] += from[1];
+            }
+
+            @Override
+            public Double finish(final double[] acc) {
+                return acc[1] == 0 ? 0D : acc[0] / acc[1];
+            }
+        };
+    }
+
+    /**
+     * The most common first name out of all students that are no longer
+     * active, with ties broken as in
+     * mostCommonFirstNameOfInactiveStudentsImperative, or null if every
+     * student is active.
+     *
+     * @return Most common first name aggregation
+     */
+    static StudentAggregation<?, String> mostCommonFirstNameOfInactiveStudents() {
+        return new StudentAggregation<StringCounter, String>() {
+            @Override
+            public StringCounter newAccumulator() {
+                return new StringCounter();
+            }
+
+            @Override
+            public void accumulate(final StringCounter acc, final Student student, final int row) {
+                if (!student.checkIsCurrent()) {
+                    acc.add(student.getFirstName(), row);
+                }
+            }
+
+            @Override
+            public void accumulateRange(final StringCounter acc, final Student[] studentArray,
+                    final int startInclusive, final int endExclusive) {
+                for (int row = startInclusive; row < endExclusive; row++) {
+                    if (!studentArray[row].checkIsCurrent()) {
+                        acc.add(studentArray[row].getFirstName(), row);
+                    }
+                }
+            }
+
+            @Override
+            public void combine(final StringCounter into, final StringCounter from) {
+                into.merge(from);
+            }
+
+            @Override
+            public String finish(final StringCounter acc) {
+                return acc.mostCommon();
+            }
+        };
+    }
+
+    /**
+     * The approximately k most common first names out of all students that
+     * are no longer active, with bounds on their counts, computed in fixed
+     * memory with a FirstNameSketch of default dimensions.
+     *
+     * @param k Number of names wanted
+     * @return Approximate top-k first name aggregation
+     */
+    static StudentAggregation<FirstNameSketch, List<FirstNameSketch.Estimate>>
+            topFirstNamesOfInactiveStudentsApproximate(final int k) {
+        return new StudentAggregation<FirstNameSketch, List<FirstNameSketch.Estimate>>() {
+            @Override
+            public FirstNameSketch newAccumulator() {
+                return new FirstNameSketch();
+            }
+
+            @Override
+            public void accumulate(final FirstNameSketch acc, final Student student, final int row) {
+                if (!student.checkIsCurrent()) {
+                    acc.add(student.getFirstName());
+                }
+            }
+
+            @Override
+            public void combine(final FirstNameSketch into, final FirstNameSketch from) {
+                into.merge(from);
+            }
+
+            @Override
+            public List<FirstNameSketch.Estimate> finish(final FirstNameSketch acc) {
+                return acc.topK(k);
+            }
+        };
+    }
+
+    /**
+     * The number of inactive students older than 20 with a grade below 65.
+     *
+     * @return Failed student count aggregation
+     */
+    static StudentAggregation<int[], Integer> countNumberOfFailedStudentsOlderThan20() {
+        return new StudentAggregation<int[], Integer>() {
+            @Override
+            public int[] newAccumulator() {
+                return new int[1];
+            }
+
+            @Override
+            public void accumulate(final int[] acc, final Student student, final int row) {
+                if (!student.checkIsCurrent() && student.getAge() > 20 && student.getGrade() < 65) {
+                    acc[0]++;
+                }
+            }
+
+            @Override
+            public void accumulateRange(final int[] acc, final Student[] studentArray,
+                    final int startInclusive, final int endExclusive) {
+                int count = 0;
+                for (int row = startInclusive; row < endExclusive; row++) {
+                    final Student s = studentArray[row];
+                    if (!s.checkIsCurrent() && s.getAge() > 20 && s.getGrade() < 65) {
+                        count++;
+                    }
+                }
+                acc[0] += count;
+            }
+
+            @Override
+            public void combine(final int[] into, final int[] from) {
+                into[0] += from[0];
+            }
+
+            @Override
+            public Integer finish(final int[] acc) {
+                return acc[0];
+            }
+        };
+    }
+}
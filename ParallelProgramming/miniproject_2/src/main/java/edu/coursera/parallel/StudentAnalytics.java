@@ -2,10 +2,10 @@ package edu.coursera.parallel;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -96,22 +96,45 @@ public final class StudentAnalytics {
      * Compute the most common first name out of all students that are no
      * longer active in the class using parallel streams. This should mirror the
      * functionality of mostCommonFirstNameOfInactiveStudentsImperative. This
-     * method should not use any loops.
+     * method should not use any loops. Names are counted into per-worker
+     * open-addressed tables merged once at the end, so counting allocates
+     * nothing per student, and ties are broken as in the imperative version.
      *
      * @param studentArray Student data for the class.
      * @return Most common first name of inactive students
      */
     public String mostCommonFirstNameOfInactiveStudentsParallelStream(final Student[] studentArray) {
-        return Stream.of(studentArray).parallel().filter(
-                student -> !student.checkIsCurrent()
-        ).map(
-                Student::getFirstName
-        ).collect(Collectors.groupingBy(
-                Function.identity(),
-                Collectors.counting()
-        )).entrySet().stream().max(
-                (a, b) -> Long.compare(a.getValue(), b.getValue())
-        ).orElseThrow(() -> new IllegalArgumentException("No students found")).getKey();
+        final StringCounter counter = IntStream.range(0, studentArray.length).parallel().filter(
+                i -> !studentArray[i].checkIsCurrent()
+        ).collect(
+                StringCounter::new,
+                (c, i) -> c.add(studentArray[i].getFirstName(), i),
+                StringCounter::merge
+        );
+        if (counter.size() == 0) {
+            throw new IllegalArgumentException("No students found");
+        }
+        return counter.mostCommon();
+    }
+
+    /**
+     * Approximately find the k most common first names out of all students
+     * that are no longer active, in parallel and in fixed memory. Each worker
+     * fills its own FirstNameSketch and the sketches are merged at the end,
+     * so heap use does not grow with the number of distinct names.
+     *
+     * @param studentArray Student data for the class.
+     * @param k Number of names wanted, at most FirstNameSketch.DEFAULT_CAPACITY
+     * @return Up to k names, most common first, with bounds on their counts
+     */
+    public List<FirstNameSketch.Estimate> topFirstNamesOfInactiveStudentsApproximate(
+            final Student[] studentArray, final int k) {
+        return IntStream.range(0, studentArray.length).parallel()
+                .filter(i -> !studentArray[i].checkIsCurrent())
+                .collect(FirstNameSketch::new,
+                        (sketch, i) -> sketch.add(studentArray[i].getFirstName()),
+                        FirstNameSketch::merge)
+                .topK(k);
     }
 
     /**
@@ -149,4 +172,123 @@ public final class StudentAnalytics {
                 s -> !s.checkIsCurrent() && s.getAge() > 20 && s.getGrade() < 65
         ).count();
     }
+
+    /**
+     * Compute the average age of all actively enrolled students directly on a
+     * columnar table, in parallel. Only the enrollment bitmap and the age
+     * column are read.
+     *
+     * @param table Student data for the class.
+     * @return Average age of enrolled students
+     */
+    public double averageAgeOfEnrolledStudentsColumnar(final StudentTable table) {
+        final BitSet current = table.current();
+        final double[] ages = table.ages();
+        return IntStream.range(0, table.size()).parallel().filter(
+                current::get
+        ).mapToDouble(
+                i -> ages[i]
+        ).average().orElse(0D);
+    }
+
+    /**
+     * Compute the most common first name out of all students that are no
+     * longer active in the class directly on a columnar table, in parallel.
+     * Each worker counts into a primitive array indexed by name code.
+     *
+     * @param table Student data for the class.
+     * @return Most common first name of inactive students
+     */
+    public String mostCommonFirstNameOfInactiveStudentsColumnar(final StudentTable table) {
+        final BitSet current = table.current();
+        final int[] codes = table.firstNameCodes();
+        final int nNames = table.getFirstNameCount();
+        final int[] counts = IntStream.range(0, table.size()).parallel().filter(
+                i -> !current.get(i)
+        ).collect(
+                () -> new int[nNames],
+                (acc, i) -> acc[codes[i]]++,
+                (a, b) -> {
+                    for (int code = 0; code < nNames; code++) {
+                        a[code] += b[code];
+                    }
+                }
+        );
+
+        final Map<String, Integer> nameCounts = new HashMap<>();
+        for (int code = 0; code < nNames; code++) {
+            if (counts[code] > 0) {
+                nameCounts.put(table.decodeFirstName(code), counts[code]);
+            }
+        }
+        if (nameCounts.isEmpty()) {
+            throw new IllegalArgumentException("No students found");
+        }
+
+        String mostCommon = null;
+        int mostCommonCount = -1;
+        for (Map.Entry<String, Integer> entry : nameCounts.entrySet()) {
+            if (mostCommon == null || entry.getValue() > mostCommonCount) {
+                mostCommon = entry.getKey();
+                mostCommonCount = entry.getValue();
+            }
+        }
+        return mostCommon;
+    }
+
+    /**
+     * Compute the number of students who have failed the course who are
+     * also older than 20 years old directly on a columnar table, in parallel.
+     * A failing grade is anything below a 65. A student has only failed the
+     * course if they have a failing grade and they are not currently active.
+     *
+     * @param table Student data for the class.
+     * @return Number of failed grades from students older than 20 years old.
+     */
+    public int countNumberOfFailedStudentsOlderThan20Columnar(final StudentTable table) {
+        final BitSet current = table.current();
+        final double[] ages = table.ages();
+        final int[] grades = table.grades();
+        return (int) IntStream.range(0, table.size()).parallel().filter(
+                i -> !current.get(i) && ages[i] > 20 && grades[i] < 65
+        ).count();
+    }
+
+    /**
+     * Count the students matching a filter by testing every student, in
+     * parallel.
+     *
+     * @param studentArray Student data for the class.
+     * @param filter Conditions to match
+     * @return Number of matching students
+     */
+    public int countStudents(final Student[] studentArray, final StudentFilter filter) {
+        return (int) Stream.of(studentArray).parallel().filter(filter).count();
+    }
+
+    /**
+     * Count the students matching a filter using bitmap indexes, so that
+     * only students whose age or grade falls in a bucket straddling one of
+     * the filter's bounds are read.
+     *
+     * @param index Indexes over the student data for the class.
+     * @param filter Conditions to match
+     * @return Number of matching students
+     */
+    public int countStudents(final StudentBitmapIndex index, final StudentFilter filter) {
+        return index.count(filter);
+    }
+
+    /**
+     * Compute the number of students who have failed the course who are
+     * also older than 20 years old using bitmap indexes. A failing grade is
+     * anything below a 65. A student has only failed the course if they have
+     * a failing grade and they are not currently active.
+     *
+     * @param index Indexes over the student data for the class.
+     * @return Number of failed grades from students older than 20 years old.
+     */
+    public int countNumberOfFailedStudentsOlderThan20Indexed(final StudentBitmapIndex index) {
+        return countStudents(index, StudentFilter.any().current(false).ageAbove(20).gradeBelow(65));
+    }
 }
@@ -0,0 +1,257 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Bitmap indexes over a Student[]: one bitmap of enrolled students, and one
+ * bitmap per age bucket and per grade bucket, each bucket covering a range of
+ * width 10 starting at 0 (the first and last buckets also take everything
+ * below and above). Bitmaps are long[] words with bit i of word w standing for
+ * row 64 * w + i.
+ *
+ * A StudentFilter is evaluated one word of 64 rows at a time by intersecting
+ * bitmaps: a bucket that lies entirely inside a condition's interval
+ * contributes its rows as matches, one that straddles a bound contributes its
+ * rows as candidates that are checked against the Student itself, and the
+ * remaining buckets are skipped. Only the candidate rows in the two boundary
+ * buckets are ever read, so selective filters touch few students.
+ *
+ * Building and querying are both parallel over ranges of words, so no two
+ * workers ever write the same word. The index refers to the array it was
+ * built from, which must not be modified afterwards.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class StudentBitmapIndex {
+    /**
+     * Width of each age and grade bucket.
+     */
+    public static final int BUCKET_WIDTH = 10;
+    /**
+     * Number of age buckets and of grade buckets.
+     */
+    public static final int BUCKETS = 10;
+    /**
+     * Number of words each parallel build task fills.
+     */
+    private static final int WORDS_PER_TASK = 1024;
+
+    /**
+     * Indexed students.
+     */
+    private final Student[] students;
+    /**
+     * Bit set for every enrolled student.
+     */
+    private final long[] current;
+    /**
+     * Bitmaps of students by age bucket.
+     */
+    private final long[][] ageBuckets;
+    /**
+     * Bitmaps of students by grade bucket.
+     */
+    private final long[][] gradeBuckets;
+
+    /**
+     * Build the indexes over an array of students in parallel.
+     *
+     * @param studentArray Student data for the class.
+     */
+    public StudentBitmapIndex(final Student[] studentArray) {
+        this.students = studentArray;
+        final int nWords = words(studentArray.length);
+        this.current = new long[nWords];
+        this.ageBuckets = new long[BUCKETS][nWords];
+        this.gradeBuckets = new long[BUCKETS][nWords];
+
+        final int nTasks = (nWords + WORDS_PER_TASK - 1) / WORDS_PER_TASK;
+        IntStream.range(0, nTasks).parallel().forEach(task -> {
+            final int start = task * WORDS_PER_TASK * Long.SIZE;
+            final int end = Math.min(start + WORDS_PER_TASK * Long.SIZE, studentArray.length);
+            for (int row = start; row < end; row++) {
+                final Student s = studentArray[row];
+                final int word = row >>> 6;
+                final long bit = 1L << row;
+                if (s.checkIsCurrent()) {
+                    current[word] |= bit;
+                }
+                ageBuckets[bucketOf(s.getAge())][word] |= bit;
+                gradeBuckets[bucketOf(s.getGrade())][word] |= bit;
+            }
+        });
+    }
+
+    /**
+     * Get the number of indexed students.
+     * @return Number of rows
+     */
+    public int size() {
+        return students.length;
+    }
+
+    /**
+     * Count the students matching a filter.
+     *
+     * @param filter Conditions to match
+     * @return Number of matching students
+     */
+    public int count(final StudentFilter filter) {
+        final Plan plan = new Plan(filter);
+        return IntStream.range(0, current.length).parallel()
+                .map(w -> Long.bitCount(plan.select(w)))
+                .sum();
+    }
+
+    /**
+     * Find the students matching a filter.
+     *
+     * @param filter Conditions to match
+     * @return Bitmap with a bit set for the row of every matching student
+     */
+    public BitSet select(final StudentFilter filter) {
+        final Plan plan = new Plan(filter);
+        final long[] words = new long[current.length];
+        Arrays.parallelSetAll(words, plan::select);
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Number of bitmap words needed for a number of rows.
+     * @param rows Number of rows
+     * @return Number of words
+     */
+    private static int words(final int rows) {
+        return (rows + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Bucket a value falls into.
+     * @param value Age or grade
+     * @return Bucket index, clamped to the first and last bucket
+     */
+    private static int bucketOf(final double value) {
+        return (int) Math.max(0, Math.min(BUCKETS - 1, Math.floor(value / BUCKET_WIDTH)));
+    }
+
+    /**
+     * The bitmaps needed to evaluate one filter, sorted out once per query.
+     */
+    private final class Plan {
+        /**
+         * The filter being evaluated.
+         */
+        private final StudentFilter filter;
+        /**
+         * Age buckets whose every value satisfies the age condition, or null
+         * if there is no age condition.
+         */
+        private final long[][] ageInside;
+        /**
+         * Age buckets that straddle a bound of the age condition.
+         */
+        private final long[][] ageStraddling;
+        /**
+         * Grade buckets whose every value satisfies the grade condition, or
+         * null if there is no grade condition.
+         */
+        private final long[][] gradeInside;
+        /**
+         * Grade buckets that straddle a bound of the grade condition.
+         */
+        private final long[][] gradeStraddling;
+
+        /**
+         * Constructor.
+         * @param setFilter Filter to evaluate
+         */
+        Plan(final StudentFilter setFilter) {
+            this.filter = setFilter;
+            final boolean ageBounded = filter.getAgeLow() != Double.NEGATIVE_INFINITY
+                    || filter.getAgeHigh() != Double.POSITIVE_INFINITY;
+            final boolean gradeBounded = filter.getGradeLow() != Double.NEGATIVE_INFINITY
+                    || filter.getGradeHigh() != Double.POSITIVE_INFINITY;
+            this.ageInside = ageBounded ? classify(ageBuckets, filter.getAgeLow(), filter.getAgeHigh(), true) : null;
+            this.ageStraddling = ageBounded
+                    ? classify(ageBuckets, filter.getAgeLow(), filter.getAgeHigh(), false) : new long[0][];
+            this.gradeInside = gradeBounded
+                    ? classify(gradeBuckets, filter.getGradeLow(), filter.getGradeHigh(), true) : null;
+            this.gradeStraddling = gradeBounded
+                    ? classify(gradeBuckets, filter.getGradeLow(), filter.getGradeHigh(), false) : new long[0][];
+        }
+
+        /**
+         * Pick the buckets that lie inside, or that straddle a bound of, the
+         * open interval (low, high).
+         *
+         * @param buckets Bitmaps by bucket
+         * @param low Exclusive lower bound
+         * @param high Exclusive upper bound
+         * @param inside true for buckets inside the interval, false for
+         *        buckets straddling a bound
+         * @return Bitmaps of the picked buckets
+         */
+        private long[][] classify(final long[][] buckets, final double low, final double high,
+                final boolean inside) {
+            return IntStream.range(0, BUCKETS).filter(b -> {
+                final double from = b == 0 ? Double.NEGATIVE_INFINITY : b * (double) BUCKET_WIDTH;
+                final double to = b == BUCKETS - 1 ? Double.POSITIVE_INFINITY : (b + 1) * (double) BUCKET_WIDTH;
+                // Bucket b holds values in [from, to).
+                final boolean disjoint = to <= low || from >= high;
+                final boolean contained = (low < from || low == Double.NEGATIVE_INFINITY) && to <= high;
+                return inside ? contained : !disjoint && !contained;
+            }).mapToObj(b -> buckets[b]).toArray(long[][]::new);
+        }
+
+        /**
+         * Evaluate the filter on one word of rows.
+         *
+         * @param w Word index
+         * @return Bits of the matching rows in that word
+         */
+        long select(final int w) {
+            long candidates = w == current.length - 1 && students.length % Long.SIZE != 0
+                    ? (1L << students.length) - 1 : -1L;
+            final Boolean wantCurrent = filter.getCurrent();
+            if (wantCurrent != null) {
+                candidates &= wantCurrent ? current[w] : ~current[w];
+            }
+
+            long sure = candidates;
+            if (ageInside != null) {
+                final long inside = or(ageInside, w);
+                candidates &= inside | or(ageStraddling, w);
+                sure &= inside;
+            }
+            if (gradeInside != null) {
+                final long inside = or(gradeInside, w);
+                candidates &= inside | or(gradeStraddling, w);
+                sure &= inside;
+            }
+
+            long result = candidates & sure;
+            for (long unsure = candidates & ~sure; unsure != 0; unsure &= unsure - 1) {
+                final int row = w * Long.SIZE + Long.numberOfTrailingZeros(unsure);
+                if (filter.test(students[row])) {
+                    result |= Long.lowestOneBit(unsure);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Union of one word of several bitmaps.
+         * @param bitmaps Bitmaps to combine
+         * @param w Word index
+         * @return Bitwise or of word w of every bitmap
+         */
+        private long or(final long[][] bitmaps, final int w) {
+            long word = 0;
+            for (long[] bitmap : bitmaps) {
+                word |= bitmap[w];
+            }
+            return word;
+        }
+    }
+}
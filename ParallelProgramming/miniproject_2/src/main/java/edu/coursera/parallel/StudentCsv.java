@@ -0,0 +1,232 @@
+package edu.coursera.parallel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Reading and writing students as CSV records, one per line:
+ * firstName,lastName,age,grade,isCurrent with isCurrent either true or
+ * false. Names may not contain commas or line breaks.
+ *
+ * Reading is done chunk by chunk so that a file can be parsed by many workers
+ * at once without ever being loaded onto the heap: chunk k holds every record
+ * whose first byte lies in [k * chunkBytes, (k + 1) * chunkBytes), and parsing
+ * it memory-maps that range plus enough of the next one to finish its last
+ * record. Parsed students are handed out in blocks through a caller-supplied
+ * buffer, so the heap used per worker is bounded by the buffer.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class StudentCsv {
+    /**
+     * Default number of bytes per chunk.
+     */
+    public static final int CHUNK_BYTES = 1 << 24;
+    /**
+     * Longest record, including its line break, that a chunk may have to
+     * read past its end to finish.
+     */
+    public static final int MAX_RECORD_BYTES = 1 << 16;
+
+    /**
+     * Default constructor.
+     */
+    private StudentCsv() {
+    }
+
+    /**
+     * Write students to a file, replacing its contents.
+     *
+     * @param file File to write
+     * @param studentArray Student data for the class.
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(final Path file, final Student[] studentArray) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Student s : studentArray) {
+                out.write(s.getFirstName());
+                out.write(',');
+                out.write(s.getLastName());
+                out.write(',');
+                out.write(Double.toString(s.getAge()));
+                out.write(',');
+                out.write(Integer.toString(s.getGrade()));
+                out.write(',');
+                out.write(Boolean.toString(s.checkIsCurrent()));
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Get the number of chunks a file is split into.
+     *
+     * @param size File size in bytes
+     * @param chunkBytes Bytes per chunk
+     * @return Number of chunks
+     */
+    public static int chunkCount(final long size, final int chunkBytes) {
+        final long chunks = (size + chunkBytes - 1) / chunkBytes;
+        if (chunks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(size + " bytes is too many chunks of " + chunkBytes);
+        }
+        return (int) chunks;
+    }
+
+    /**
+     * Parse the records of one chunk, passing them on in blocks.
+     *
+     * @param channel Open channel to the file
+     * @param size File size in bytes
+     * @param chunk Index of the chunk to parse
+     * @param chunkBytes Bytes per chunk
+     * @param block Buffer to parse students into
+     * @param consumer Called with the buffer and the number of students in it
+     *        every time it fills up, and once more for a final partial block
+     * @throws IOException If the file cannot be mapped or a record in the
+     *         chunk is malformed
+     */
+    public static void parseChunk(
+            final FileChannel channel,
+            final long size,
+            final int chunk,
+            final int chunkBytes,
+            final Student[] block,
+            final ObjIntConsumer<Student[]> consumer
+    ) throws IOException {
+        final long chunkStart = (long) chunk * chunkBytes;
+        // Map from one byte early, so that a chunk starting right after a
+        // line break can tell that it starts on a record.
+        final long mapStart = chunk == 0 ? 0 : chunkStart - 1;
+        final long mapEnd = Math.min(size, chunkStart + chunkBytes + MAX_RECORD_BYTES);
+        final MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        final int recordsEnd = (int) (Math.min(size, chunkStart + chunkBytes) - mapStart);
+
+        int pos = 0;
+        if (chunk > 0) {
+            while (pos < bytes.limit() && bytes.get(pos) != '\n') {
+                pos++;
+            }
+            pos++;
+        }
+
+        int count = 0;
+        final int[] commas = new int[4];
+        while (pos < recordsEnd) {
+            int lineEnd = pos;
+            int nCommas = 0;
+            while (lineEnd < bytes.limit() && bytes.get(lineEnd) != '\n') {
+                if (bytes.get(lineEnd) == ',') {
+                    // Count every comma so that extra fields are reported
+                    // rather than folded into the last one.
+                    if (nCommas < commas.length) {
+                        commas[nCommas] = lineEnd;
+                    }
+                    nCommas++;
+                }
+                lineEnd++;
+            }
+            if (lineEnd == bytes.limit() && mapEnd < size) {
+                throw new IOException("Record at byte " + (mapStart + pos)
+                        + " is longer than " + MAX_RECORD_BYTES + " bytes");
+            }
+            final int recordStart = pos;
+            pos = lineEnd + 1;
+            if (lineEnd > recordStart && bytes.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd == recordStart) {
+                continue;
+            }
+            if (nCommas != commas.length) {
+                throw new IOException("Expected " + (commas.length + 1) + " fields but found "
+                        + (nCommas + 1) + " in record at byte " + (mapStart + recordStart));
+            }
+
+            try {
+                block[count++] = new Student(
+                        decode(bytes, recordStart, commas[0]),
+                        decode(bytes, commas[0] + 1, commas[1]),
+                        Double.parseDouble(decode(bytes, commas[1] + 1, commas[2])),
+                        parseInt(bytes, commas[2] + 1, commas[3]),
+                        parseBoolean(bytes, commas[3] + 1, lineEnd));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed field in record at byte " + (mapStart + recordStart), e);
+            }
+            if (count == block.length) {
+                consumer.accept(block, count);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            consumer.accept(block, count);
+        }
+    }
+
+    /**
+     * Decode a range of bytes as UTF-8.
+     *
+     * @param bytes Buffer to read from
+     * @param start First byte
+     * @param end First byte past the range
+     * @return Decoded string
+     */
+    private static String decode(final MappedByteBuffer bytes, final int start, final int end) {
+        final byte[] raw = new byte[end - start];
+        final ByteBuffer range = bytes.duplicate();
+        range.position(start);
+        range.get(raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse a range of bytes as a decimal int, without decoding it to a
+     * String first.
+     *
+     * @param bytes Buffer to read from
+     * @param start First byte
+     * @param end First byte past the range
+     * @return Parsed value
+     * @throws NumberFormatException If the range is not a decimal int
+     */
+    private static int parseInt(final MappedByteBuffer bytes, final int start, final int end) {
+        final boolean negative = end > start && bytes.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 9) {
+            // Empty, or too long to parse without checking for overflow.
+            return Integer.parseInt(decode(bytes, start, end));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            final int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + decode(bytes, start, end) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a range of bytes as a boolean the way Boolean.parseBoolean does:
+     * true if it reads "true" ignoring case, false otherwise.
+     *
+     * @param bytes Buffer to read from
+     * @param start First byte
+     * @param end First byte past the range
+     * @return Parsed value
+     */
+    private static boolean parseBoolean(final MappedByteBuffer bytes, final int start, final int end) {
+        if (end - start != 4) {
+            return false;
+        }
+        return (bytes.get(start) | 0x20) == 't' && (bytes.get(start + 1) | 0x20) == 'r'
+                && (bytes.get(start + 2) | 0x20) == 'u' && (bytes.get(start + 3) | 0x20) == 'e';
+    }
+}
@@ -0,0 +1,169 @@
+package edu.coursera.parallel;
+
+import java.util.function.Predicate;
+
+/**
+ * A conjunction of conditions on a student's enrollment, age and grade, e.g.
+ * StudentFilter.any().current(false).ageAbove(20).gradeBelow(65).
+ *
+ * Filters are immutable: every condition method returns a new filter with the
+ * condition added, and adding a second bound on the same attribute keeps the
+ * tighter of the two. Age and grade conditions are kept as open intervals, so
+ * that a StudentBitmapIndex can compare them against its buckets.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class StudentFilter implements Predicate<Student> {
+    /**
+     * Filter accepting every student.
+     */
+    private static final StudentFilter ANY = new StudentFilter(null,
+            Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    /**
+     * Required enrollment, or null if either is accepted.
+     */
+    private final Boolean current;
+    /**
+     * Ages must be strictly above this.
+     */
+    private final double ageLow;
+    /**
+     * Ages must be strictly below this.
+     */
+    private final double ageHigh;
+    /**
+     * Grades must be strictly above this.
+     */
+    private final double gradeLow;
+    /**
+     * Grades must be strictly below this.
+     */
+    private final double gradeHigh;
+
+    /**
+     * Constructor.
+     * @param setCurrent Required enrollment, null for either
+     * @param setAgeLow Exclusive lower bound on age
+     * @param setAgeHigh Exclusive upper bound on age
+     * @param setGradeLow Exclusive lower bound on grade
+     * @param setGradeHigh Exclusive upper bound on grade
+     */
+    private StudentFilter(
+            final Boolean setCurrent,
+            final double setAgeLow,
+            final double setAgeHigh,
+            final double setGradeLow,
+            final double setGradeHigh
+    ) {
+        this.current = setCurrent;
+        this.ageLow = setAgeLow;
+        this.ageHigh = setAgeHigh;
+        this.gradeLow = setGradeLow;
+        this.gradeHigh = setGradeHigh;
+    }
+
+    /**
+     * Get the filter accepting every student, to add conditions to.
+     * @return Filter with no conditions
+     */
+    public static StudentFilter any() {
+        return ANY;
+    }
+
+    /**
+     * Require a given enrollment.
+     * @param isCurrent true to keep only enrolled students, false to keep
+     *        only inactive ones
+     * @return Filter with the condition added
+     */
+    public StudentFilter current(final boolean isCurrent) {
+        if (current != null && current != isCurrent) {
+            throw new IllegalArgumentException("Filter already requires current = " + current);
+        }
+        return new StudentFilter(isCurrent, ageLow, ageHigh, gradeLow, gradeHigh);
+    }
+
+    /**
+     * Require age &gt; bound.
+     * @param bound Exclusive lower bound
+     * @return Filter with the condition added
+     */
+    public StudentFilter ageAbove(final double bound) {
+        return new StudentFilter(current, Math.max(ageLow, bound), ageHigh, gradeLow, gradeHigh);
+    }
+
+    /**
+     * Require age &lt; bound.
+     * @param bound Exclusive upper bound
+     * @return Filter with the condition added
+     */
+    public StudentFilter ageBelow(final double bound) {
+        return new StudentFilter(current, ageLow, Math.min(ageHigh, bound), gradeLow, gradeHigh);
+    }
+
+    /**
+     * Require grade &gt;= bound.
+     * @param bound Inclusive lower bound
+     * @return Filter with the condition added
+     */
+    public StudentFilter gradeAtLeast(final int bound) {
+        return new StudentFilter(current, ageLow, ageHigh, Math.max(gradeLow, bound - 1.0), gradeHigh);
+    }
+
+    /**
+     * Require grade &lt; bound.
+     * @param bound Exclusive upper bound
+     * @return Filter with the condition added
+     */
+    public StudentFilter gradeBelow(final int bound) {
+        return new StudentFilter(current, ageLow, ageHigh, gradeLow, Math.min(gradeHigh, bound));
+    }
+
+    @Override
+    public boolean test(final Student s) {
+        return (current == null || s.checkIsCurrent() == current)
+                && s.getAge() > ageLow && s.getAge() < ageHigh
+                && s.getGrade() > gradeLow && s.getGrade() < gradeHigh;
+    }
+
+    /**
+     * Get the required enrollment.
+     * @return Required enrollment, or null if either is accepted
+     */
+    Boolean getCurrent() {
+        return current;
+    }
+
+    /**
+     * Get the exclusive lower bound on age.
+     * @return Bound, negative infinity if unbounded
+     */
+    double getAgeLow() {
+        return ageLow;
+    }
+
+    /**
+     * Get the exclusive upper bound on age.
+     * @return Bound, positive infinity if unbounded
+     */
+    double getAgeHigh() {
+        return ageHigh;
+    }
+
+    /**
+     * Get the exclusive lower bound on grade.
+     * @return Bound, negative infinity if unbounded
+     */
+    double getGradeLow() {
+        return gradeLow;
+    }
+
+    /**
+     * Get the exclusive upper bound on grade.
+     * @return Bound, positive infinity if unbounded
+     */
+    double getGradeHigh() {
+        return gradeHigh;
+    }
+}
@@ -0,0 +1,242 @@
+package edu.coursera.parallel;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A columnar, primitive-backed store of students. Each attribute lives in its
+ * own array indexed by row, names are dictionary-encoded as int codes, and the
+ * enrollment flag is a bitmap, so a scan over one attribute touches only that
+ * attribute's memory and never dereferences a Student or a String.
+ *
+ * A table is immutable once built and may be read from any number of threads.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class StudentTable {
+    /**
+     * Number of rows.
+     */
+    private final int size;
+    /**
+     * Age of each student.
+     */
+    private final double[] ages;
+    /**
+     * Grade of each student.
+     */
+    private final int[] grades;
+    /**
+     * Bit i is set if student i is currently enrolled.
+     */
+    private final BitSet current;
+    /**
+     * Dictionary code of each student's first name.
+     */
+    private final int[] firstNameCodes;
+    /**
+     * First names by dictionary code, in order of first appearance.
+     */
+    private final String[] firstNameDictionary;
+    /**
+     * Dictionary code of each student's last name.
+     */
+    private final int[] lastNameCodes;
+    /**
+     * Last names by dictionary code, in order of first appearance.
+     */
+    private final String[] lastNameDictionary;
+
+    /**
+     * Constructor.
+     * @param setAges Age column
+     * @param setGrades Grade column
+     * @param setCurrent Enrollment bitmap
+     * @param setFirstNameCodes First name code column
+     * @param setFirstNameDictionary First names by code
+     * @param setLastNameCodes Last name code column
+     * @param setLastNameDictionary Last names by code
+     */
+    private StudentTable(
+            final double[] setAges,
+            final int[] setGrades,
+            final BitSet setCurrent,
+            final int[] setFirstNameCodes,
+            final String[] setFirstNameDictionary,
+            final int[] setLastNameCodes,
+            final String[] setLastNameDictionary
+    ) {
+        this.size = setAges.length;
+        this.ages = setAges;
+        this.grades = setGrades;
+        this.current = setCurrent;
+        this.firstNameCodes = setFirstNameCodes;
+        this.firstNameDictionary = setFirstNameDictionary;
+        this.lastNameCodes = setLastNameCodes;
+        this.lastNameDictionary = setLastNameDictionary;
+    }
+
+    /**
+     * Build a table holding the same data as an array of students.
+     *
+     * @param studentArray Student data for the class.
+     * @return Columnar copy of the students
+     */
+    public static StudentTable fromStudents(final Student[] studentArray) {
+        final int n = studentArray.length;
+        final double[] ages = new double[n];
+        final int[] grades = new int[n];
+        final BitSet current = new BitSet(n);
+        final int[] firstNameCodes = new int[n];
+        final int[] lastNameCodes = new int[n];
+        final Map<String, Integer> firstNames = new HashMap<>();
+        final Map<String, Integer> lastNames = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            final Student s = studentArray[i];
+            ages[i] = s.getAge();
+            grades[i] = s.getGrade();
+            if (s.checkIsCurrent()) {
+                current.set(i);
+            }
+            firstNameCodes[i] = encode(firstNames, s.getFirstName());
+            lastNameCodes[i] = encode(lastNames, s.getLastName());
+        }
+
+        return new StudentTable(ages, grades, current, firstNameCodes,
+                dictionary(firstNames), lastNameCodes, dictionary(lastNames));
+    }
+
+    /**
+     * Get the number of students in this table.
+     * @return Number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the age of a student.
+     * @param row Row of the student
+     * @return The student's age
+     */
+    public double getAge(final int row) {
+        return ages[row];
+    }
+
+    /**
+     * Get the grade of a student.
+     * @param row Row of the student
+     * @return The student's grade
+     */
+    public int getGrade(final int row) {
+        return grades[row];
+    }
+
+    /**
+     * Check if a student is currently enrolled.
+     * @param row Row of the student
+     * @return true if the student is currently enrolled, false otherwise
+     */
+    public boolean checkIsCurrent(final int row) {
+        return current.get(row);
+    }
+
+    /**
+     * Get the first name of a student.
+     * @param row Row of the student
+     * @return The student's first name
+     */
+    public String getFirstName(final int row) {
+        return firstNameDictionary[firstNameCodes[row]];
+    }
+
+    /**
+     * Get the last name of a student.
+     * @param row Row of the student
+     * @return The student's last name
+     */
+    public String getLastName(final int row) {
+        return lastNameDictionary[lastNameCodes[row]];
+    }
+
+    /**
+     * Get the number of distinct first names.
+     * @return Size of the first name dictionary
+     */
+    public int getFirstNameCount() {
+        return firstNameDictionary.length;
+    }
+
+    /**
+     * Decode a first name code.
+     * @param code Dictionary code
+     * @return The first name with that code
+     */
+    public String decodeFirstName(final int code) {
+        return firstNameDictionary[code];
+    }
+
+    /**
+     * Get the raw age column. Callers must not modify it.
+     * @return Ages by row
+     */
+    double[] ages() {
+        return ages;
+    }
+
+    /**
+     * Get the raw grade column. Callers must not modify it.
+     * @return Grades by row
+     */
+    int[] grades() {
+        return grades;
+    }
+
+    /**
+     * Get the raw enrollment bitmap. Callers must not modify it.
+     * @return Bitmap with a bit set for every enrolled row
+     */
+    BitSet current() {
+        return current;
+    }
+
+    /**
+     * Get the raw first name code column. Callers must not modify it.
+     * @return First name codes by row
+     */
+    int[] firstNameCodes() {
+        return firstNameCodes;
+    }
+
+    /**
+     * Look up the code of a value, assigning the next free code if it has not
+     * been seen before.
+     *
+     * @param codes Codes assigned so far
+     * @param value Value to encode
+     * @return The value's code
+     */
+    private static int encode(final Map<String, Integer> codes, final String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = codes.size();
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Invert a value to code mapping into an array indexed by code.
+     *
+     * @param codes Codes assigned to each value
+     * @return Values by code
+     */
+    private static String[] dictionary(final Map<String, Integer> codes) {
+        final String[] values = new String[codes.size()];
+        for (Map.Entry<String, Integer> entry : codes.entrySet()) {
+            values[entry.getValue()] = entry.getKey();
+        }
+        return values;
+    }
+}
@@ -1,6 +1,19 @@
 package edu.coursera.parallel;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 import junit.framework.TestCase;
 
@@ -164,4 +177,337 @@ public class StudentAnalyticsTest extends TestCase {
         assertTrue(msg, speedup > 1.2);
     }
 
+    /*
+     * Test that the columnar table round-trips student data and that every columnar query matches its imperative
+     * counterpart.
+     */
+    public void testColumnarQueries() {
+        final Student[] students = generateStudentData();
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final StudentTable table = StudentTable.fromStudents(students);
+
+        assertEquals(students.length, table.size());
+        for (int i = 0; i < students.length; i += 9973) {
+            assertEquals(students[i].getFirstName(), table.getFirstName(i));
+            assertEquals(students[i].getLastName(), table.getLastName(i));
+            assertEquals(students[i].getAge(), table.getAge(i));
+            assertEquals(students[i].getGrade(), table.getGrade(i));
+            assertEquals(students[i].checkIsCurrent(), table.checkIsCurrent(i));
+        }
+
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(students),
+                analytics.averageAgeOfEnrolledStudentsColumnar(table), 1E-5);
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(students),
+                analytics.mostCommonFirstNameOfInactiveStudentsColumnar(table));
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                analytics.countNumberOfFailedStudentsOlderThan20Columnar(table));
+    }
+
+    /*
+     * Test that the parallel most-common-name query breaks ties exactly like the imperative version, with many
+     * distinct names that all occur equally often.
+     */
+    public void testMostCommonFirstNameTieBreaking() {
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final Random r = new Random(42);
+        for (int distinct : new int[] {2, 13, 1000}) {
+            final Student[] students = new Student[distinct * 50];
+            for (int s = 0; s < students.length; s++) {
+                students[s] = new Student("name" + (s % distinct), "last", 30, 50, false);
+            }
+            for (int s = students.length - 1; s > 0; s--) {
+                final int other = r.nextInt(s + 1);
+                final Student tmp = students[s];
+                students[s] = students[other];
+                students[other] = tmp;
+            }
+            assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(students),
+                    analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students));
+        }
+    }
+
+    /*
+     * Test that the fused single-pass engine returns the same answers as the imperative queries.
+     */
+    public void testFusedQueries() {
+        final Student[] students = generateStudentData();
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final FusedStudentAnalytics fused = new FusedStudentAnalytics();
+        final FusedStudentAnalytics.Handle<Double> averageAge =
+                fused.register(StudentAggregation.averageAgeOfEnrolledStudents());
+        final FusedStudentAnalytics.Handle<String> mostCommonName =
+                fused.register(StudentAggregation.mostCommonFirstNameOfInactiveStudents());
+        final FusedStudentAnalytics.Handle<Integer> failedCount =
+                fused.register(StudentAggregation.countNumberOfFailedStudentsOlderThan20());
+
+        final FusedStudentAnalytics.Result result = fused.run(students);
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(students), result.get(averageAge), 1E-5);
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(students), result.get(mostCommonName));
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                (int) result.get(failedCount));
+    }
+
+    /*
+     * Test that the incremental view tracks inserts, deletes and updates made
+     * by concurrent writers.
+     */
+    public void testIncrementalQueries() throws InterruptedException {
+        final Student[] students = generateStudentData();
+        final int half = students.length / 2;
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final IncrementalStudentAnalytics view =
+                new IncrementalStudentAnalytics(Arrays.copyOf(students, half));
+
+        // Each writer inserts its share of the second half, then flips the
+        // enrollment of every tenth student in its share.
+        final int nWriters = 4;
+        final Thread[] writers = new Thread[nWriters];
+        for (int w = 0; w < nWriters; w++) {
+            final int start = half + w * (students.length - half) / nWriters;
+            final int end = half + (w + 1) * (students.length - half) / nWriters;
+            writers[w] = new Thread(() -> {
+                for (int i = start; i < end; i++) {
+                    view.insert(students[i]);
+                }
+                for (int i = start; i < end; i += 10) {
+                    final Student s = students[i];
+                    final Student flipped = new Student(s.getFirstName(), s.getLastName(),
+                            s.getAge(), s.getGrade(), !s.checkIsCurrent());
+                    view.update(s, flipped);
+                    students[i] = flipped;
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        for (int i = 0; i < half; i += 7) {
+            view.delete(students[i]);
+        }
+        final Student[] remaining = IntStream.range(0, students.length)
+                .filter(i -> i >= half || i % 7 != 0)
+                .mapToObj(i -> students[i])
+                .toArray(Student[]::new);
+
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(remaining),
+                view.averageAgeOfEnrolledStudents(), 1E-5);
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(remaining),
+                view.mostCommonFirstNameOfInactiveStudents());
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(remaining),
+                view.countNumberOfFailedStudentsOlderThan20());
+
+        try {
+            new IncrementalStudentAnalytics().delete(new Student("Max", "Smith", 30, 50, false));
+            fail("Deleting an absent inactive student should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /*
+     * Test that every read of the incremental view is a consistent snapshot
+     * while writers move students between shards, and that an empty view
+     * reports an average of 0 like the other implementations.
+     */
+    public void testIncrementalSnapshots() throws InterruptedException {
+        final IncrementalStudentAnalytics view = new IncrementalStudentAnalytics();
+        assertEquals(0.0, view.averageAgeOfEnrolledStudents());
+        assertNull(view.mostCommonFirstNameOfInactiveStudents());
+
+        // All enrolled students are 30, so an average mixing the sum of one
+        // moment with the count of another differs from 30.
+        for (int i = 0; i < 1000; i++) {
+            view.insert(new Student(firstNames[i % firstNames.length], lastNames[0], 30, 80, true));
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        final Thread[] writers = new Thread[2];
+        for (int w = 0; w < writers.length; w++) {
+            final int seed = w;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 200000; i++) {
+                    final Student before = new Student(firstNames[(seed + i) % firstNames.length],
+                            lastNames[0], 30, 80, true);
+                    final Student after = new Student(firstNames[(seed + i + 1) % firstNames.length],
+                            lastNames[0], 30, 80, true);
+                    view.update(before, after);
+                    view.update(after, before);
+                }
+                done.set(true);
+            });
+            writers[w].start();
+        }
+        do {
+            assertEquals(30.0, view.averageAgeOfEnrolledStudents());
+        } while (!done.get());
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(30.0, view.averageAgeOfEnrolledStudents());
+        assertEquals(0, view.countNumberOfFailedStudentsOlderThan20());
+    }
+
+    /*
+     * Test that bitmap-indexed counts and selections match a full scan.
+     */
+    public void testIndexedQueries() {
+        final Student[] students = Arrays.copyOf(generateStudentData(), 1000003);
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final StudentBitmapIndex index = new StudentBitmapIndex(students);
+
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                analytics.countNumberOfFailedStudentsOlderThan20Indexed(index));
+
+        final StudentFilter[] filters = {
+            StudentFilter.any(),
+            StudentFilter.any().current(true),
+            StudentFilter.any().ageAbove(30).ageBelow(40),
+            StudentFilter.any().ageAbove(-5).gradeAtLeast(90),
+            StudentFilter.any().current(false).ageAbove(55.5).gradeAtLeast(20).gradeBelow(21),
+            StudentFilter.any().ageAbove(50).ageBelow(50),
+        };
+        for (StudentFilter filter : filters) {
+            final int expected = analytics.countStudents(students, filter);
+            assertEquals(expected, analytics.countStudents(index, filter));
+
+            final BitSet selected = index.select(filter);
+            assertEquals(expected, selected.cardinality());
+            for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+                assertTrue(filter.test(students[row]));
+            }
+        }
+    }
+
+    /*
+     * Test that aggregations computed while streaming a CSV file match those
+     * computed over the array, and that chunking neither drops nor repeats
+     * records.
+     */
+    public void testCsvIngestion() throws IOException {
+        final Student[] students = generateStudentData();
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final Path file = Files.createTempFile("students", ".csv");
+        try {
+            StudentCsv.write(file, students);
+            final FusedStudentAnalytics fused = new FusedStudentAnalytics();
+            final FusedStudentAnalytics.Handle<Double> averageAge =
+                    fused.register(StudentAggregation.averageAgeOfEnrolledStudents());
+            final FusedStudentAnalytics.Handle<String> mostCommonName =
+                    fused.register(StudentAggregation.mostCommonFirstNameOfInactiveStudents());
+            final FusedStudentAnalytics.Handle<Integer> failedCount =
+                    fused.register(StudentAggregation.countNumberOfFailedStudentsOlderThan20());
+
+            final FusedStudentAnalytics.Result result = fused.run(file);
+            assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(students), result.get(averageAge), 1E-5);
+            assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(students), result.get(mostCommonName));
+            assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                    (int) result.get(failedCount));
+
+            final Student[] few = Arrays.copyOf(students, 50);
+            StudentCsv.write(file, few);
+            for (int chunkBytes : new int[] {1, 7, 40, 1 << 20}) {
+                final List<Student> parsed = new ArrayList<>();
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    final long size = channel.size();
+                    for (int chunk = 0; chunk < StudentCsv.chunkCount(size, chunkBytes); chunk++) {
+                        StudentCsv.parseChunk(channel, size, chunk, chunkBytes, new Student[3],
+                                (block, count) -> parsed.addAll(Arrays.asList(block).subList(0, count)));
+                    }
+                }
+                assertEquals(few.length, parsed.size());
+                for (int i = 0; i < few.length; i++) {
+                    assertEquals(few[i].getFirstName(), parsed.get(i).getFirstName());
+                    assertEquals(few[i].getAge(), parsed.get(i).getAge());
+                    assertEquals(few[i].getGrade(), parsed.get(i).getGrade());
+                    assertEquals(few[i].checkIsCurrent(), parsed.get(i).checkIsCurrent());
+                }
+            }
+
+            // A record with one field too many or too few is rejected with
+            // its byte offset, the second line starting at byte 25.
+            for (String bad : new String[] {"Max,Smith,30.0,50,true,extra", "Max,Smith,30.0,50"}) {
+                Files.write(file, ("Max,Smith,30.0,50,false\r\n" + bad + "\n").getBytes("UTF-8"));
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    StudentCsv.parseChunk(channel, channel.size(), 0, 1 << 20, new Student[3], (block, count) -> { });
+                    fail("Record with the wrong number of fields should fail: " + bad);
+                } catch (IOException expected) {
+                    assertTrue(expected.getMessage(), expected.getMessage().endsWith("at byte 25"));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /*
+     * Test that approximate top-k names find the heavy hitters among many
+     * distinct names, with bounds that contain the true counts, including
+     * after merging small sketches.
+     */
+    public void testApproximateTopFirstNames() {
+        final int nStudents = 1000000;
+        final Student[] students = new Student[nStudents];
+        final Map<String, Integer> exact = new HashMap<>();
+        final Random r = new Random(42);
+        for (int s = 0; s < nStudents; s++) {
+            // Half the students share ten names with decreasing frequency,
+            // the other half have names drawn from 200000 rare ones.
+            final String name = r.nextBoolean()
+                    ? "Heavy" + Integer.numberOfTrailingZeros(r.nextInt(1 << 10) | (1 << 9))
+                    : "Rare" + r.nextInt(200000);
+            final boolean current = r.nextInt(10) == 0;
+            students[s] = new Student(name, "Smith", 30, 70, current);
+            if (!current) {
+                exact.merge(name, 1, Integer::sum);
+            }
+        }
+
+        final List<FirstNameSketch.Estimate> top =
+                new StudentAnalytics().topFirstNamesOfInactiveStudentsApproximate(students, 10);
+        assertEquals(10, top.size());
+        assertEquals(new StudentAnalytics().mostCommonFirstNameOfInactiveStudentsImperative(students),
+                top.get(0).getName());
+        for (FirstNameSketch.Estimate estimate : top) {
+            assertTrue(estimate.toString(), estimate.getName().startsWith("Heavy"));
+            final int count = exact.get(estimate.getName());
+            assertTrue(estimate + " vs " + count,
+                    estimate.getLowerBound() <= count && count <= estimate.getUpperBound());
+        }
+
+        final FirstNameSketch merged = new FirstNameSketch(8, 64, 4);
+        for (int part = 0; part < 4; part++) {
+            final FirstNameSketch sketch = new FirstNameSketch(8, 64, 4);
+            for (int s = part; s < nStudents; s += 4) {
+                if (!students[s].checkIsCurrent()) {
+                    sketch.add(students[s].getFirstName());
+                }
+            }
+            merged.merge(sketch);
+        }
+        assertEquals(exact.values().stream().mapToLong(Integer::longValue).sum(), merged.getTotal());
+        for (FirstNameSketch.Estimate estimate : merged.topK(8)) {
+            final int count = exact.getOrDefault(estimate.getName(), 0);
+            assertTrue(estimate + " vs " + count,
+                    estimate.getLowerBound() <= count && count <= estimate.getUpperBound());
+        }
+        // Heavy0 occurs far more than total / capacity times, so it must be
+        // tracked, and ranked first, even by a tiny sketch.
+        assertEquals("Heavy0", merged.topK(1).get(0).getName());
+
+        // With one or two counters per row the estimates are too coarse to
+        // rank names, but the sketch must still work and keep its bounds.
+        for (int width : new int[] {1, 2}) {
+            final FirstNameSketch narrow = new FirstNameSketch(8, width, 2);
+            for (Student student : students) {
+                if (!student.checkIsCurrent()) {
+                    narrow.add(student.getFirstName());
+                }
+            }
+            for (FirstNameSketch.Estimate estimate : narrow.topK(8)) {
+                final int count = exact.getOrDefault(estimate.getName(), 0);
+                assertTrue(width + ": " + estimate + " vs " + count,
+                        estimate.getLowerBound() <= count && count <= estimate.getUpperBound());
+                assertTrue(estimate.toString(), estimate.getUpperBound() <= narrow.getTotal());
+            }
+        }
+    }
 }
@@ -0,0 +1,258 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Multiplies one fixed left operand A by many right operands. A is packed
+ * once, on construction, into the row panels the cache-blocked micro-kernel
+ * reads with unit stride, so later products neither re-read A from its
+ * original layout nor pack it again.
+ *
+ * A batch of B/C pairs is processed in stages: the right operands of a stage
+ * are packed in parallel, then every tile of every product in the stage is
+ * computed by one parallel loop, so small products share the workers instead
+ * of each paying for its own fork and join. Stages are cut so that the packed
+ * right operands of one stage stay within STAGE_BYTES. Like the tiled
+ * kernel, stages run on the calling ForkJoinPool or the common pool.
+ *
+ * Batching only pays in two ways. Reusing the packed A saves about M * K
+ * copies per product, next to 2 * M * K * N flops, so under 1 / (2 * N) of
+ * the work and negligible once B is more than a few columns wide. Merging
+ * the tiles of a stage into one loop pays when each product alone has fewer
+ * MC x NC tiles than the pool has workers, which leaves workers idle at
+ * every per-product join. Otherwise one call per product through
+ * MatrixMultiply.parTiledMatrixMultiply costs the same: with a 1024 x 1024 A,
+ * 2 workers on one core and batches of 4 to 128 operands 16 or 64 columns
+ * wide, BatchedMatrixMultiplyBenchmark found the two within error of each
+ * other at every size.
+ *
+ * Safe for concurrent use: the packed A is read-only and the statistics are
+ * atomic.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BatchedMatrixMultiply {
+    /**
+     * Most bytes of packed right operands held by one stage, unless a single
+     * operand is larger.
+     */
+    static final long STAGE_BYTES = 64L << 20;
+
+    /**
+     * Rows of A and of every product.
+     */
+    private final int rows;
+    /**
+     * Columns of A, and rows of every right operand.
+     */
+    private final int depth;
+    /**
+     * A packed by TiledMatrixMultiply.packA.
+     */
+    private final double[] packedA;
+    /**
+     * Time spent packing A, in nanoseconds.
+     */
+    private final long packNanos;
+    /**
+     * Number of products computed with the packed A.
+     */
+    private final AtomicLong products = new AtomicLong();
+    /**
+     * Number of calls to multiply.
+     */
+    private final AtomicLong batches = new AtomicLong();
+    /**
+     * Number of parallel stages run.
+     */
+    private final AtomicLong stages = new AtomicLong();
+
+    /**
+     * Constructor, packing A. Later writes to A are not seen.
+     * @param setA Left operand of every product, with dimensions MxK
+     */
+    public BatchedMatrixMultiply(final DenseMatrix setA) {
+        final long start = System.nanoTime();
+        this.rows = setA.getRows();
+        this.depth = setA.getCols();
+        this.packedA = rows == 0 ? new double[0] : TiledMatrixMultiply.packA(setA);
+        this.packNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Compute C = A x B for a single right operand.
+     *
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix with dimensions MxN
+     */
+    public void multiply(final DenseMatrix B, final DenseMatrix C) {
+        multiply(Arrays.asList(B), Arrays.asList(C));
+    }
+
+    /**
+     * Compute Cs[i] = A x Bs[i] for every pair. Right operands may have
+     * different numbers of columns.
+     *
+     * @param Bs Input matrices, each with dimensions KxN_i
+     * @param Cs Output matrices, each with dimensions MxN_i
+     */
+    public void multiply(final List<DenseMatrix> Bs, final List<DenseMatrix> Cs) {
+        if (Bs.size() != Cs.size()) {
+            throw new IllegalArgumentException(Bs.size() + " right operands but " + Cs.size() + " outputs");
+        }
+        final int count = Bs.size();
+        final DenseMatrix[] outputs = new DenseMatrix[count];
+        for (int b = 0; b < count; b++) {
+            final DenseMatrix B = Bs.get(b);
+            final DenseMatrix C = Cs.get(b);
+            if (B.getRows() != depth || C.getRows() != rows || C.getCols() != B.getCols()) {
+                throw new IllegalArgumentException("Product " + b + ": cannot store a " + rows + "x" + depth
+                        + " by " + B.getRows() + "x" + B.getCols() + " product in a " + C.getRows() + "x"
+                        + C.getCols() + " matrix");
+            }
+            if (C.data() == B.data()) {
+                throw new IllegalArgumentException("Product " + b
+                        + ": the output matrix must not share storage with its input");
+            }
+            outputs[b] = C.hasContiguousRows() ? C : new DenseMatrix(rows, C.getCols());
+        }
+
+        int start = 0;
+        while (start < count) {
+            int end = start + 1;
+            long bytes = packedBytes(Bs.get(start));
+            while (end < count && bytes + packedBytes(Bs.get(end)) <= STAGE_BYTES) {
+                bytes += packedBytes(Bs.get(end));
+                end++;
+            }
+            stage(Bs, outputs, start, end);
+            start = end;
+        }
+
+        for (int b = 0; b < count; b++) {
+            final DenseMatrix C = Cs.get(b);
+            if (outputs[b] != C) {
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < C.getCols(); j++) {
+                        C.set(i, j, outputs[b].get(i, j));
+                    }
+                }
+            }
+        }
+        products.addAndGet(count);
+        batches.incrementAndGet();
+    }
+
+    /**
+     * Get the number of products computed with the packed A.
+     * @return Products computed so far
+     */
+    public long getProducts() {
+        return products.get();
+    }
+
+    /**
+     * Get the number of batches multiplied.
+     * @return Calls to multiply so far
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Get the number of parallel stages run. Each stage is one pack of its
+     * right operands and one parallel loop over all of their tiles.
+     * @return Stages so far
+     */
+    public long getStages() {
+        return stages.get();
+    }
+
+    /**
+     * Get the size of the packed A.
+     * @return Bytes of packed A
+     */
+    public long getPackedBytes() {
+        return (long) packedA.length * Double.BYTES;
+    }
+
+    /**
+     * Get the one-time cost of packing A.
+     * @return Nanoseconds spent packing A
+     */
+    public long getPackNanos() {
+        return packNanos;
+    }
+
+    /**
+     * Get the bytes of A packing avoided by reusing the packed A, compared
+     * with packing it once per product.
+     * @return Bytes of packing saved so far
+     */
+    public long getSavedPackBytes() {
+        return Math.max(0, products.get() - 1) * getPackedBytes();
+    }
+
+    /**
+     * Pack the right operands of one stage and compute all of their tiles in
+     * one parallel loop.
+     *
+     * @param Bs All right operands of the batch
+     * @param outputs Outputs of the batch, with contiguous rows
+     * @param start First product of the stage
+     * @param end First product past the stage
+     */
+    private void stage(final List<DenseMatrix> Bs, final DenseMatrix[] outputs, final int start, final int end) {
+        stages.incrementAndGet();
+        final int size = end - start;
+        final double[][] packedBs = new double[size][];
+        final int rowTiles = (rows + TiledMatrixMultiply.MC - 1) / TiledMatrixMultiply.MC;
+        final int[] firstTile = new int[size + 1];
+        for (int b = 0; b < size; b++) {
+            final int cols = Bs.get(start + b).getCols();
+            final int colTiles = (cols + TiledMatrixMultiply.NC - 1) / TiledMatrixMultiply.NC;
+            firstTile[b + 1] = firstTile[b] + (depth == 0 ? 0 : rowTiles * colTiles);
+        }
+        if (depth == 0) {
+            for (int b = 0; b < size; b++) {
+                TiledMatrixMultiply.fillZero(outputs[start + b]);
+            }
+            return;
+        }
+        IntStream.range(0, size).parallel()
+                .forEach(b -> packedBs[b] = TiledMatrixMultiply.packBSequential(Bs.get(start + b)));
+        if (firstTile[size] > 0) {
+            IntStream.range(0, firstTile[size]).parallel().forEach(tile -> {
+                int b = Arrays.binarySearch(firstTile, tile);
+                if (b < 0) {
+                    b = -b - 2;
+                } else {
+                    while (firstTile[b + 1] == tile) {
+                        b++;
+                    }
+                }
+                final DenseMatrix C = outputs[start + b];
+                final int local = tile - firstTile[b];
+                final int ti = local % rowTiles;
+                final int tj = local / rowTiles;
+                TiledMatrixMultiply.multiplyPackedTile(packedA, packedBs[b], C, depth,
+                        ti * TiledMatrixMultiply.MC, Math.min(rows, (ti + 1) * TiledMatrixMultiply.MC),
+                        tj * TiledMatrixMultiply.NC,
+                        Math.min(C.getCols(), (tj + 1) * TiledMatrixMultiply.NC));
+            });
+        }
+    }
+
+    /**
+     * Size of a right operand once packed into NR-column panels.
+     *
+     * @param B Right operand
+     * @return Bytes of packed panels
+     */
+    private static long packedBytes(final DenseMatrix B) {
+        final long panels = (B.getCols() + TiledMatrixMultiply.NR - 1) / TiledMatrixMultiply.NR;
+        return panels * B.getRows() * TiledMatrixMultiply.NR * Double.BYTES;
+    }
+}
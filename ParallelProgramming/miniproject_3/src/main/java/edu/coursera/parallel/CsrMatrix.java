@@ -0,0 +1,194 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sparse matrix in compressed sparse row form. The non-zeros of
+ * row i are values[rowPtr[i]] to values[rowPtr[i + 1] - 1], in strictly
+ * increasing column order, with their columns in the same positions of
+ * colIdx. Memory is proportional to the number of non-zeros rather than to
+ * rows x cols.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CsrMatrix {
+    /**
+     * Number of rows.
+     */
+    private final int rows;
+    /**
+     * Number of columns.
+     */
+    private final int cols;
+    /**
+     * Start of each row in colIdx and values, plus the number of non-zeros
+     * at index rows.
+     */
+    private final int[] rowPtr;
+    /**
+     * Column of each non-zero.
+     */
+    private final int[] colIdx;
+    /**
+     * Value of each non-zero.
+     */
+    private final double[] values;
+
+    /**
+     * Constructor. The arrays are taken over without copying and must not be
+     * modified afterwards.
+     *
+     * @param setRows Number of rows
+     * @param setCols Number of columns
+     * @param setRowPtr Start of each row, rows + 1 long, from 0 to the
+     *        number of non-zeros
+     * @param setColIdx Column of each non-zero, increasing within a row
+     * @param setValues Value of each non-zero
+     */
+    public CsrMatrix(
+            final int setRows,
+            final int setCols,
+            final int[] setRowPtr,
+            final int[] setColIdx,
+            final double[] setValues
+    ) {
+        if (setRows < 0 || setCols < 0) {
+            throw new IllegalArgumentException("Negative dimension " + setRows + "x" + setCols);
+        }
+        if (setRowPtr.length != setRows + 1 || setRowPtr[0] != 0) {
+            throw new IllegalArgumentException("Row pointers must have " + (setRows + 1)
+                    + " entries starting at 0");
+        }
+        final int nnz = setRowPtr[setRows];
+        if (setColIdx.length < nnz || setValues.length < nnz) {
+            throw new IllegalArgumentException("Expected " + nnz + " column indices and values");
+        }
+        for (int i = 0; i < setRows; i++) {
+            if (setRowPtr[i + 1] < setRowPtr[i]) {
+                throw new IllegalArgumentException("Row pointers decrease at row " + i);
+            }
+            for (int p = setRowPtr[i]; p < setRowPtr[i + 1]; p++) {
+                final int col = setColIdx[p];
+                if (col < 0 || col >= setCols || (p > setRowPtr[i] && col <= setColIdx[p - 1])) {
+                    throw new IllegalArgumentException("Row " + i
+                            + " has a column index out of range or out of order: " + col);
+                }
+            }
+        }
+        this.rows = setRows;
+        this.cols = setCols;
+        this.rowPtr = setRowPtr;
+        this.colIdx = setColIdx;
+        this.values = setValues;
+    }
+
+    /**
+     * Build a sparse matrix from the non-zero elements of a dense one.
+     *
+     * @param M Dense matrix
+     * @return Sparse copy of M
+     */
+    public static CsrMatrix fromDense(final DenseMatrix M) {
+        final int[] rowPtr = new int[M.getRows() + 1];
+        for (int i = 0; i < M.getRows(); i++) {
+            int count = 0;
+            for (int j = 0; j < M.getCols(); j++) {
+                if (M.get(i, j) != 0.0) {
+                    count++;
+                }
+            }
+            rowPtr[i + 1] = rowPtr[i] + count;
+        }
+        final int[] colIdx = new int[rowPtr[M.getRows()]];
+        final double[] values = new double[colIdx.length];
+        int p = 0;
+        for (int i = 0; i < M.getRows(); i++) {
+            for (int j = 0; j < M.getCols(); j++) {
+                final double v = M.get(i, j);
+                if (v != 0.0) {
+                    colIdx[p] = j;
+                    values[p] = v;
+                    p++;
+                }
+            }
+        }
+        return new CsrMatrix(M.getRows(), M.getCols(), rowPtr, colIdx, values);
+    }
+
+    /**
+     * Get the number of rows.
+     * @return Number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns.
+     * @return Number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of stored non-zeros.
+     * @return Number of non-zeros
+     */
+    public int getNonZeros() {
+        return rowPtr[rows];
+    }
+
+    /**
+     * Get an element, searching its row.
+     *
+     * @param i Row
+     * @param j Column
+     * @return Element (i, j), zero if it is not stored
+     */
+    public double get(final int i, final int j) {
+        if (i < 0 || i >= rows || j < 0 || j >= cols) {
+            throw new IndexOutOfBoundsException("(" + i + ", " + j + ") is outside a " + rows + "x" + cols
+                    + " matrix");
+        }
+        final int p = Arrays.binarySearch(colIdx, rowPtr[i], rowPtr[i + 1], j);
+        return p >= 0 ? values[p] : 0.0;
+    }
+
+    /**
+     * Expand into a new row-major dense matrix.
+     * @return Dense copy of this matrix
+     */
+    public DenseMatrix toDense() {
+        final DenseMatrix dense = new DenseMatrix(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                dense.set(i, colIdx[p], values[p]);
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Get the row pointers, shared with this matrix.
+     * @return Start of each row
+     */
+    int[] rowPtr() {
+        return rowPtr;
+    }
+
+    /**
+     * Get the column indices, shared with this matrix.
+     * @return Column of each non-zero
+     */
+    int[] colIdx() {
+        return colIdx;
+    }
+
+    /**
+     * Get the values, shared with this matrix.
+     * @return Value of each non-zero
+     */
+    double[] values() {
+        return values;
+    }
+}
@@ -0,0 +1,334 @@
+package edu.coursera.parallel;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A dense matrix of doubles stored in a single flat array. Element (i, j)
+ * lives at data[offset + i * rowStride + j * colStride], so a freshly
+ * allocated matrix is row-major with rowStride = cols and colStride = 1, and
+ * sub-matrix and transposed views share the array of the matrix they were
+ * taken from without copying anything.
+ *
+ * Row-major contiguous matrices can be exposed as a DoubleBuffer over the same
+ * storage, for code that takes buffers rather than arrays. The buffer is a
+ * heap buffer wrapping the array, not a direct one, so channel I/O on it is
+ * still staged through a temporary direct buffer by the JDK.
+ *
+ * Not thread-safe: concurrent writers must write disjoint elements.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class DenseMatrix {
+    /**
+     * Backing storage, possibly shared with other views.
+     */
+    private final double[] data;
+    /**
+     * Index of element (0, 0) in data.
+     */
+    private final int offset;
+    /**
+     * Number of rows.
+     */
+    private final int rows;
+    /**
+     * Number of columns.
+     */
+    private final int cols;
+    /**
+     * Distance in data between vertically adjacent elements.
+     */
+    private final int rowStride;
+    /**
+     * Distance in data between horizontally adjacent elements.
+     */
+    private final int colStride;
+
+    /**
+     * Constructor.
+     * @param setData Backing storage
+     * @param setOffset Index of element (0, 0)
+     * @param setRows Number of rows
+     * @param setCols Number of columns
+     * @param setRowStride Distance between vertically adjacent elements
+     * @param setColStride Distance between horizontally adjacent elements
+     */
+    private DenseMatrix(
+            final double[] setData,
+            final int setOffset,
+            final int setRows,
+            final int setCols,
+            final int setRowStride,
+            final int setColStride
+    ) {
+        this.data = setData;
+        this.offset = setOffset;
+        this.rows = setRows;
+        this.cols = setCols;
+        this.rowStride = setRowStride;
+        this.colStride = setColStride;
+    }
+
+    /**
+     * Allocate a row-major matrix of zeros.
+     *
+     * @param rows Number of rows
+     * @param cols Number of columns
+     */
+    public DenseMatrix(final int rows, final int cols) {
+        this(new double[checkedSize(rows, cols)], 0, rows, cols, cols, 1);
+    }
+
+    /**
+     * View an existing array as a row-major matrix, without copying it.
+     *
+     * @param data Backing storage, at least rows * cols long
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * @return Matrix over data
+     */
+    public static DenseMatrix wrap(final double[] data, final int rows, final int cols) {
+        return wrap(data, 0, rows, cols, cols, 1);
+    }
+
+    /**
+     * View an existing array as a matrix with arbitrary strides, without
+     * copying it.
+     *
+     * @param data Backing storage
+     * @param offset Index of element (0, 0)
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * @param rowStride Distance between vertically adjacent elements
+     * @param colStride Distance between horizontally adjacent elements
+     * @return Matrix over data
+     */
+    public static DenseMatrix wrap(
+            final double[] data,
+            final int offset,
+            final int rows,
+            final int cols,
+            final int rowStride,
+            final int colStride
+    ) {
+        if (rows < 0 || cols < 0 || rowStride < 0 || colStride < 0 || offset < 0) {
+            throw new IllegalArgumentException("Negative dimension, stride or offset");
+        }
+        if (rows > 0 && cols > 0
+                && offset + (long) (rows - 1) * rowStride + (long) (cols - 1) * colStride >= data.length) {
+            throw new IllegalArgumentException("A " + rows + "x" + cols + " matrix with strides (" + rowStride
+                    + ", " + colStride + ") at offset " + offset + " does not fit in " + data.length + " elements");
+        }
+        return new DenseMatrix(data, offset, rows, cols, rowStride, colStride);
+    }
+
+    /**
+     * Copy the top-left rows x cols block of a double[][] into a new
+     * row-major matrix.
+     *
+     * @param M Matrix to copy
+     * @param rows Number of rows to copy
+     * @param cols Number of columns to copy
+     * @return Row-major copy
+     */
+    public static DenseMatrix copyOf(final double[][] M, final int rows, final int cols) {
+        final DenseMatrix copy = new DenseMatrix(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(M[i], 0, copy.data, i * cols, cols);
+        }
+        return copy;
+    }
+
+    /**
+     * Get the number of rows.
+     * @return Number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns.
+     * @return Number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the distance in storage between vertically adjacent elements.
+     * @return Row stride
+     */
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    /**
+     * Get the distance in storage between horizontally adjacent elements.
+     * @return Column stride
+     */
+    public int getColStride() {
+        return colStride;
+    }
+
+    /**
+     * Get an element.
+     *
+     * @param i Row
+     * @param j Column
+     * @return Element (i, j)
+     */
+    public double get(final int i, final int j) {
+        return data[index(i, j)];
+    }
+
+    /**
+     * Set an element.
+     *
+     * @param i Row
+     * @param j Column
+     * @param value New value of element (i, j)
+     */
+    public void set(final int i, final int j, final double value) {
+        data[index(i, j)] = value;
+    }
+
+    /**
+     * Get a view of a block of this matrix, sharing its storage.
+     *
+     * @param rowStart First row of the block
+     * @param colStart First column of the block
+     * @param nRows Number of rows in the block
+     * @param nCols Number of columns in the block
+     * @return View of the block
+     */
+    public DenseMatrix view(final int rowStart, final int colStart, final int nRows, final int nCols) {
+        if (rowStart < 0 || colStart < 0 || nRows < 0 || nCols < 0
+                || rowStart + nRows > rows || colStart + nCols > cols) {
+            throw new IndexOutOfBoundsException("Block (" + rowStart + ", " + colStart + ") of " + nRows + "x"
+                    + nCols + " is outside a " + rows + "x" + cols + " matrix");
+        }
+        return new DenseMatrix(data, offset + rowStart * rowStride + colStart * colStride,
+                nRows, nCols, rowStride, colStride);
+    }
+
+    /**
+     * Get a transposed view of this matrix, sharing its storage.
+     * @return View with rows and columns swapped
+     */
+    public DenseMatrix transpose() {
+        return new DenseMatrix(data, offset, cols, rows, colStride, rowStride);
+    }
+
+    /**
+     * Copy this matrix into new row-major storage.
+     * @return Row-major contiguous copy
+     */
+    public DenseMatrix copy() {
+        final DenseMatrix copy = new DenseMatrix(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                copy.data[i * cols + j] = data[offset + i * rowStride + j * colStride];
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Copy this matrix into the top-left block of a double[][].
+     *
+     * @param M Destination, at least as large as this matrix
+     */
+    public void copyInto(final double[][] M) {
+        for (int i = 0; i < rows; i++) {
+            final double[] row = M[i];
+            if (colStride == 1) {
+                System.arraycopy(data, offset + i * rowStride, row, 0, cols);
+            } else {
+                for (int j = 0; j < cols; j++) {
+                    row[j] = data[offset + i * rowStride + j * colStride];
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the elements of each row are adjacent in storage.
+     * @return true if the column stride is 1
+     */
+    public boolean hasContiguousRows() {
+        return colStride == 1;
+    }
+
+    /**
+     * Check whether the whole matrix occupies one contiguous row-major range
+     * of storage.
+     * @return true if the matrix is row-major with no gaps between rows
+     */
+    public boolean isContiguous() {
+        return colStride == 1 && (rowStride == cols || rows <= 1);
+    }
+
+    /**
+     * Expose a contiguous matrix as a heap DoubleBuffer sharing its storage,
+     * with element (i, j) at buffer index i * cols + j. Writes through either
+     * are seen by the other; no elements are copied.
+     *
+     * @return Buffer over this matrix's elements
+     * @throws IllegalStateException If the matrix is not contiguous
+     */
+    public DoubleBuffer asDoubleBuffer() {
+        if (!isContiguous()) {
+            throw new IllegalStateException("Only contiguous row-major matrices can be exposed as a buffer");
+        }
+        return DoubleBuffer.wrap(data, offset, rows * cols).slice();
+    }
+
+    /**
+     * Get the backing storage, shared with this matrix.
+     * @return Backing array
+     */
+    double[] data() {
+        return data;
+    }
+
+    /**
+     * Get the index of element (0, 0) in the backing storage.
+     * @return Offset
+     */
+    int offset() {
+        return offset;
+    }
+
+    /**
+     * Index of an element in the backing storage, after checking bounds.
+     *
+     * @param i Row
+     * @param j Column
+     * @return Index into data
+     */
+    private int index(final int i, final int j) {
+        if (i < 0 || i >= rows || j < 0 || j >= cols) {
+            throw new IndexOutOfBoundsException("(" + i + ", " + j + ") is outside a " + rows + "x" + cols
+                    + " matrix");
+        }
+        return offset + i * rowStride + j * colStride;
+    }
+
+    /**
+     * Number of elements of a rows x cols matrix, checked to fit an array.
+     *
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * @return rows * cols
+     */
+    private static int checkedSize(final int rows, final int cols) {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException("Negative dimension " + rows + "x" + cols);
+        }
+        final long size = (long) rows * cols;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A " + rows + "x" + cols + " matrix does not fit in one array");
+        }
+        return (int) size;
+    }
+}
@@ -0,0 +1,380 @@
+package edu.coursera.parallel;
+
+import static edu.coursera.parallel.TiledMatrixMultiply.KC;
+import static edu.coursera.parallel.TiledMatrixMultiply.MR;
+import static edu.coursera.parallel.TiledMatrixMultiply.NR;
+
+import java.util.Arrays;
+
+/**
+ * Single precision matrix multiply on flat row-major float[] matrices, which
+ * halve the memory traffic of the double kernels for workloads that tolerate
+ * single precision.
+ *
+ * Both kernels can accumulate in float or in double. Float accumulation
+ * loses about one bit per doubling of the shared dimension; double
+ * accumulation rounds each element of C once, so its error is that of the
+ * float inputs alone, at the cost of converting every operand to double in
+ * the inner loop. The parallel multiply runs the tiling and B packing of
+ * TiledMatrixMultiply with float micro-kernels; with double accumulation it
+ * does not block the shared dimension, so that partial sums never round-trip
+ * through C.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class FloatMatrixMultiply {
+    /**
+     * Default constructor.
+     */
+    private FloatMatrixMultiply() {
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) sequentially.
+     *
+     * @param A An input matrix with dimensions MxK, row-major
+     * @param B An input matrix with dimensions KxN, row-major
+     * @param C The output matrix with dimensions MxN, row-major
+     * @param M Rows of A and C
+     * @param K Columns of A and rows of B
+     * @param N Columns of B and C
+     * @param doubleAccumulation true to accumulate each element in double
+     */
+    public static void seqMatrixMultiply(
+            final float[] A,
+            final float[] B,
+            final float[] C,
+            final int M,
+            final int K,
+            final int N,
+            final boolean doubleAccumulation
+    ) {
+        check(A, B, C, M, K, N);
+        final double[] acc = doubleAccumulation ? new double[N] : null;
+        for (int i = 0; i < M; i++) {
+            final int cRow = i * N;
+            if (doubleAccumulation) {
+                Arrays.fill(acc, 0.0);
+                for (int k = 0; k < K; k++) {
+                    final double aik = A[i * K + k];
+                    final int bRow = k * N;
+                    for (int j = 0; j < N; j++) {
+                        acc[j] += aik * B[bRow + j];
+                    }
+                }
+                for (int j = 0; j < N; j++) {
+                    C[cRow + j] = (float) acc[j];
+                }
+            } else {
+                Arrays.fill(C, cRow, cRow + N, 0.0f);
+                for (int k = 0; k < K; k++) {
+                    final float aik = A[i * K + k];
+                    final int bRow = k * N;
+                    for (int j = 0; j < N; j++) {
+                        C[cRow + j] += aik * B[bRow + j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) in parallel with
+     * the cache-blocked kernel, over tiles of C. Runs on the calling
+     * ForkJoinPool when there is one and on the common pool otherwise.
+     *
+     * @param A An input matrix with dimensions MxK, row-major
+     * @param B An input matrix with dimensions KxN, row-major
+     * @param C The output matrix with dimensions MxN, row-major
+     * @param M Rows of A and C
+     * @param K Columns of A and rows of B
+     * @param N Columns of B and C
+     * @param doubleAccumulation true to accumulate each element in double
+     */
+    public static void parMatrixMultiply(
+            final float[] A,
+            final float[] B,
+            final float[] C,
+            final int M,
+            final int K,
+            final int N,
+            final boolean doubleAccumulation
+    ) {
+        check(A, B, C, M, K, N);
+        if (M == 0 || N == 0) {
+            return;
+        }
+        if (K == 0) {
+            Arrays.fill(C, 0, M * N, 0.0f);
+            return;
+        }
+        final float[] packedB = TiledMatrixMultiply.packB(B, K, N);
+        final int kc = doubleAccumulation ? K : KC;
+        TiledMatrixMultiply.forEachTile(M, N, (rowStart, rowEnd, colStart, colEnd) ->
+                TiledMatrixMultiply.forEachBlock(K, kc, rowStart, rowEnd, colStart, colEnd,
+                        (i, height, j, width, k0, depth, panelOffset) -> {
+                            if (doubleAccumulation) {
+                                doubleKernel(A, i * K, K, height, packedB, panelOffset, depth,
+                                        C, i * N + j, N, width);
+                            } else {
+                                floatKernel(A, i * K + k0, K, height, packedB, panelOffset, depth,
+                                        C, i * N + j, N, width, k0 == 0);
+                            }
+                        }));
+    }
+
+    /**
+     * Compute up to an MR x NR block of C over one k block, accumulating in
+     * float. Rows past height read row 0 again and are not stored.
+     *
+     * @param a Left operand
+     * @param aBlock Index in a of the block's first row at the first k
+     * @param aStride Distance in a between rows
+     * @param height Number of rows to compute, at most MR
+     * @param packedB Right operand in NR-column panels
+     * @param panelOffset Index of the first k of the block in the panel
+     * @param depth Length of the k block
+     * @param c Output matrix
+     * @param cBlock Index in c of the block's top-left element
+     * @param cStride Distance in c between rows
+     * @param width Number of columns to store, at most NR
+     * @param overwrite true to store the block, false to add it to c
+     */
+    private static void floatKernel(
+            final float[] a,
+            final int aBlock,
+            final int aStride,
+            final int height,
+            final float[] packedB,
+            final int panelOffset,
+            final int depth,
+            final float[] c,
+            final int cBlock,
+            final int cStride,
+            final int width,
+            final boolean overwrite
+    ) {
+        final int a0 = aBlock;
+        final int a1 = height > 1 ? a0 + aStride : a0;
+        final int a2 = height > 2 ? a0 + 2 * aStride : a0;
+        final int a3 = height > 3 ? a0 + 3 * aStride : a0;
+        float c00 = 0;
+        float c01 = 0;
+        float c02 = 0;
+        float c03 = 0;
+        float c10 = 0;
+        float c11 = 0;
+        float c12 = 0;
+        float c13 = 0;
+        float c20 = 0;
+        float c21 = 0;
+        float c22 = 0;
+        float c23 = 0;
+        float c30 = 0;
+        float c31 = 0;
+        float c32 = 0;
+        float c33 = 0;
+
+        int b = panelOffset;
+        for (int k = 0; k < depth; k++, b += NR) {
+            final float b0 = packedB[b];
+            final float b1 = packedB[b + 1];
+            final float b2 = packedB[b + 2];
+            final float b3 = packedB[b + 3];
+            final float x0 = a[a0 + k];
+            final float x1 = a[a1 + k];
+            final float x2 = a[a2 + k];
+            final float x3 = a[a3 + k];
+            c00 += x0 * b0;
+            c01 += x0 * b1;
+            c02 += x0 * b2;
+            c03 += x0 * b3;
+            c10 += x1 * b0;
+            c11 += x1 * b1;
+            c12 += x1 * b2;
+            c13 += x1 * b3;
+            c20 += x2 * b0;
+            c21 += x2 * b1;
+            c22 += x2 * b2;
+            c23 += x2 * b3;
+            c30 += x3 * b0;
+            c31 += x3 * b1;
+            c32 += x3 * b2;
+            c33 += x3 * b3;
+        }
+
+        store(c, cBlock, width, overwrite, c00, c01, c02, c03);
+        if (height > 1) {
+            store(c, cBlock + cStride, width, overwrite, c10, c11, c12, c13);
+        }
+        if (height > 2) {
+            store(c, cBlock + 2 * cStride, width, overwrite, c20, c21, c22, c23);
+        }
+        if (height > 3) {
+            store(c, cBlock + 3 * cStride, width, overwrite, c30, c31, c32, c33);
+        }
+    }
+
+    /**
+     * Compute up to an MR x NR block of C over the whole shared dimension,
+     * accumulating in double and rounding to float once. Rows past height
+     * read row 0 again and are not stored.
+     *
+     * @param a Left operand
+     * @param aBlock Index in a of the block's first row at k = 0
+     * @param aStride Distance in a between rows
+     * @param height Number of rows to compute, at most MR
+     * @param packedB Right operand in NR-column panels
+     * @param panelOffset Index of k = 0 in the panel
+     * @param depth Length of the shared dimension
+     * @param c Output matrix
+     * @param cBlock Index in c of the block's top-left element
+     * @param cStride Distance in c between rows
+     * @param width Number of columns to store, at most NR
+     */
+    private static void doubleKernel(
+            final float[] a,
+            final int aBlock,
+            final int aStride,
+            final int height,
+            final float[] packedB,
+            final int panelOffset,
+            final int depth,
+            final float[] c,
+            final int cBlock,
+            final int cStride,
+            final int width
+    ) {
+        final int a0 = aBlock;
+        final int a1 = height > 1 ? a0 + aStride : a0;
+        final int a2 = height > 2 ? a0 + 2 * aStride : a0;
+        final int a3 = height > 3 ? a0 + 3 * aStride : a0;
+        double c00 = 0;
+        double c01 = 0;
+        double c02 = 0;
+        double c03 = 0;
+        double c10 = 0;
+        double c11 = 0;
+        double c12 = 0;
+        double c13 = 0;
+        double c20 = 0;
+        double c21 = 0;
+        double c22 = 0;
+        double c23 = 0;
+        double c30 = 0;
+        double c31 = 0;
+        double c32 = 0;
+        double c33 = 0;
+
+        int b = panelOffset;
+        for (int k = 0; k < depth; k++, b += NR) {
+            final double b0 = packedB[b];
+            final double b1 = packedB[b + 1];
+            final double b2 = packedB[b + 2];
+            final double b3 = packedB[b + 3];
+            final double x0 = a[a0 + k];
+            final double x1 = a[a1 + k];
+            final double x2 = a[a2 + k];
+            final double x3 = a[a3 + k];
+            c00 += x0 * b0;
+            c01 += x0 * b1;
+            c02 += x0 * b2;
+            c03 += x0 * b3;
+            c10 += x1 * b0;
+            c11 += x1 * b1;
+            c12 += x1 * b2;
+            c13 += x1 * b3;
+            c20 += x2 * b0;
+            c21 += x2 * b1;
+            c22 += x2 * b2;
+            c23 += x2 * b3;
+            c30 += x3 * b0;
+            c31 += x3 * b1;
+            c32 += x3 * b2;
+            c33 += x3 * b3;
+        }
+
+        store(c, cBlock, width, true, (float) c00, (float) c01, (float) c02, (float) c03);
+        if (height > 1) {
+            store(c, cBlock + cStride, width, true, (float) c10, (float) c11, (float) c12, (float) c13);
+        }
+        if (height > 2) {
+            store(c, cBlock + 2 * cStride, width, true, (float) c20, (float) c21, (float) c22, (float) c23);
+        }
+        if (height > 3) {
+            store(c, cBlock + 3 * cStride, width, true, (float) c30, (float) c31, (float) c32, (float) c33);
+        }
+    }
+
+    /**
+     * Store or accumulate up to NR consecutive values into C.
+     *
+     * @param c Output matrix
+     * @param j Index in c of the first element to write
+     * @param width Number of elements to write, at most NR
+     * @param overwrite true to store, false to add
+     * @param v0 Value for element j
+     * @param v1 Value for element j + 1
+     * @param v2 Value for element j + 2
+     * @param v3 Value for element j + 3
+     */
+    private static void store(
+            final float[] c,
+            final int j,
+            final int width,
+            final boolean overwrite,
+            final float v0,
+            final float v1,
+            final float v2,
+            final float v3
+    ) {
+        if (width == NR) {
+            if (overwrite) {
+                c[j] = v0;
+                c[j + 1] = v1;
+                c[j + 2] = v2;
+                c[j + 3] = v3;
+            } else {
+                c[j] += v0;
+                c[j + 1] += v1;
+                c[j + 2] += v2;
+                c[j + 3] += v3;
+            }
+            return;
+        }
+        final float[] values = {v0, v1, v2, v3};
+        for (int col = 0; col < width; col++) {
+            c[j + col] = overwrite ? values[col] : c[j + col] + values[col];
+        }
+    }
+
+    /**
+     * Check the array lengths of a product and that C is not an input.
+     *
+     * @param A Left operand
+     * @param B Right operand
+     * @param C Output matrix
+     * @param M Rows of A and C
+     * @param K Columns of A and rows of B
+     * @param N Columns of B and C
+     */
+    private static void check(
+            final float[] A,
+            final float[] B,
+            final float[] C,
+            final int M,
+            final int K,
+            final int N
+    ) {
+        if (M < 0 || K < 0 || N < 0) {
+            throw new IllegalArgumentException("Negative dimension in a " + M + "x" + K + " by " + K + "x" + N
+                    + " product");
+        }
+        if (A.length < (long) M * K || B.length < (long) K * N || C.length < (long) M * N) {
+            throw new IllegalArgumentException("Arrays too short for a " + M + "x" + K + " by " + K + "x" + N
+                    + " product");
+        }
+        if (C == A || C == B) {
+            throw new IllegalArgumentException("The output matrix must not be an input");
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package edu.coursera.parallel;
 
-import java.util.Arrays;
-
 import static edu.rice.pcdp.PCDP.*;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Wrapper class for implementing matrix multiply efficiently in parallel.
  */
 @SuppressWarnings("WeakerAccess")
 public final class MatrixMultiply {
+    /**
+     * Default largest dimension the recursive multiply computes without
+     * splitting.
+     */
+    public static final int DEFAULT_LEAF_SIZE = 128;
+    /**
+     * Strassen cutoff that disables Strassen steps in the recursive multiply.
+     */
+    public static final int NO_STRASSEN = Integer.MAX_VALUE;
+
     /**
      * Default constructor.
      */
@@ -52,21 +62,274 @@ public final class MatrixMultiply {
             final double[][] C,
             final int N
     ) {
-        if(INPUT_LENGTH == C.length) {
-            System.arraycopy(C, 0, LAST_VALUE, 0, C.length);
-            return;
-        } else {
-            INPUT_LENGTH = C.length;
-        }
         forall2dChunked(0, N - 1, 0, N - 1, (i, j) -> {
             C[i][j] = 0.0;
             for (int k = 0; k < N; k++) {
                 C[i][j] += A[i][k] * B[k][j];
             }
         });
-        LAST_VALUE = Arrays.copyOf(C, C.length);
     }
 
-    private static int INPUT_LENGTH;//Cached length
-    private static double[][] LAST_VALUE;//Cached value
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) in parallel with a
+     * cache-blocked kernel: B is packed into column panels once, C is split
+     * into tiles computed in parallel, and each tile is accumulated in
+     * register-sized blocks over cache-sized slices of the k dimension.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     */
+    public static void parTiledMatrixMultiply(
+            final double[][] A,
+            final double[][] B,
+            final double[][] C,
+            final int N
+    ) {
+        TiledMatrixMultiply.multiply(A, B, C, N);
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) sequentially on
+     * flat matrices, which may be views with arbitrary strides.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix with dimensions MxN
+     */
+    public static void seqMatrixMultiply(
+            final DenseMatrix A,
+            final DenseMatrix B,
+            final DenseMatrix C
+    ) {
+        checkProduct(A, B, C);
+        for (int i = 0; i < A.getRows(); i++) {
+            multiplyRow(A, B, C, i);
+        }
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) in parallel over
+     * rows of C on flat matrices, which may be views with arbitrary strides.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix with dimensions MxN
+     */
+    public static void parMatrixMultiply(
+            final DenseMatrix A,
+            final DenseMatrix B,
+            final DenseMatrix C
+    ) {
+        checkProduct(A, B, C);
+        if (A.getRows() > 0) {
+            forallChunked(0, A.getRows() - 1, i -> multiplyRow(A, B, C, i));
+        }
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) in parallel with
+     * the cache-blocked kernel on flat matrices, without copying operands
+     * whose rows are contiguous.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix with dimensions MxN
+     */
+    public static void parTiledMatrixMultiply(
+            final DenseMatrix A,
+            final DenseMatrix B,
+            final DenseMatrix C
+    ) {
+        checkProduct(A, B, C);
+        TiledMatrixMultiply.multiply(A, B, C);
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) by recursive
+     * divide-and-conquer over quadrants on the common fork/join pool, taking
+     * Strassen steps on sizes of at least the given cutoff.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     * @param strassenCutoff Smallest size that takes a Strassen step, or
+     *        NO_STRASSEN
+     */
+    public static void parRecursiveMatrixMultiply(
+            final double[][] A,
+            final double[][] B,
+            final double[][] C,
+            final int N,
+            final int strassenCutoff
+    ) {
+        final DenseMatrix product = new DenseMatrix(N, N);
+        parRecursiveMatrixMultiply(DenseMatrix.copyOf(A, N, N), DenseMatrix.copyOf(B, N, N), product,
+                DEFAULT_LEAF_SIZE, strassenCutoff, ForkJoinPool.commonPool());
+        product.copyInto(C);
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) by recursive
+     * divide-and-conquer on a caller-supplied fork/join pool. Each task
+     * computes the quadrants of its block of C in parallel until every
+     * dimension is at most leafSize, where the cache-blocked kernel takes
+     * over sequentially. Square blocks of even size at least strassenCutoff
+     * take a Strassen step instead. The pool is not shut down.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix with dimensions MxN
+     * @param leafSize Largest dimension computed without splitting
+     * @param strassenCutoff Smallest size that takes a Strassen step, or
+     *        NO_STRASSEN
+     * @param pool Pool to run the tasks on
+     */
+    public static void parRecursiveMatrixMultiply(
+            final DenseMatrix A,
+            final DenseMatrix B,
+            final DenseMatrix C,
+            final int leafSize,
+            final int strassenCutoff,
+            final ForkJoinPool pool
+    ) {
+        checkProduct(A, B, C);
+        if (leafSize <= 0 || strassenCutoff <= 0) {
+            throw new IllegalArgumentException("Leaf size and Strassen cutoff must be positive, got " + leafSize
+                    + " and " + strassenCutoff);
+        }
+        final DenseMatrix c = C.hasContiguousRows() ? C : new DenseMatrix(C.getRows(), C.getCols());
+        pool.invoke(new RecursiveMatrixMultiply.MultiplyTask(A.hasContiguousRows() ? A : A.copy(),
+                B.hasContiguousRows() ? B : B.copy(), c, false, leafSize, strassenCutoff));
+        if (c != C) {
+            for (int i = 0; i < C.getRows(); i++) {
+                for (int j = 0; j < C.getCols(); j++) {
+                    C.set(i, j, c.get(i, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Perform a sparse matrix-vector multiply (A x = y) in parallel over row
+     * partitions balanced by non-zero count.
+     *
+     * @param A A sparse input matrix with dimensions MxN
+     * @param x An input vector of length N
+     * @param y The output vector of length M
+     */
+    public static void parSparseMatrixVectorMultiply(
+            final CsrMatrix A,
+            final double[] x,
+            final double[] y
+    ) {
+        if (x.length != A.getCols() || y.length != A.getRows()) {
+            throw new IllegalArgumentException("Cannot multiply a " + A.getRows() + "x" + A.getCols()
+                    + " matrix by a vector of length " + x.length + " into one of length " + y.length);
+        }
+        if (x == y) {
+            throw new IllegalArgumentException("The output vector must not be the input vector");
+        }
+        SparseMatrixMultiply.multiply(A, x, y);
+    }
+
+    /**
+     * Perform a sparse-dense matrix multiply (A x B = C) in parallel over
+     * row partitions of A balanced by non-zero count, skipping the zeros of
+     * A entirely.
+     *
+     * @param A A sparse input matrix with dimensions MxK
+     * @param B A dense input matrix with dimensions KxN
+     * @param C The output matrix with dimensions MxN
+     */
+    public static void parSparseMatrixMultiply(
+            final CsrMatrix A,
+            final DenseMatrix B,
+            final DenseMatrix C
+    ) {
+        if (A.getCols() != B.getRows() || C.getRows() != A.getRows() || C.getCols() != B.getCols()) {
+            throw new IllegalArgumentException("Cannot store a " + A.getRows() + "x" + A.getCols() + " by "
+                    + B.getRows() + "x" + B.getCols() + " product in a " + C.getRows() + "x" + C.getCols()
+                    + " matrix");
+        }
+        if (C.data() == B.data()) {
+            throw new IllegalArgumentException("The output matrix must not share storage with an input");
+        }
+        SparseMatrixMultiply.multiply(A, B, C);
+    }
+
+    /**
+     * Perform a sparse-sparse matrix multiply (A x B) in parallel over row
+     * partitions of A balanced by the multiply-adds each row needs.
+     *
+     * @param A A sparse input matrix with dimensions MxK
+     * @param B A sparse input matrix with dimensions KxN
+     * @return The sparse product with dimensions MxN
+     */
+    public static CsrMatrix parSparseMatrixMultiply(
+            final CsrMatrix A,
+            final CsrMatrix B
+    ) {
+        if (A.getCols() != B.getRows()) {
+            throw new IllegalArgumentException("Cannot multiply a " + A.getRows() + "x" + A.getCols() + " by a "
+                    + B.getRows() + "x" + B.getCols() + " matrix");
+        }
+        return SparseMatrixMultiply.multiply(A, B);
+    }
+
+    /**
+     * Compute row i of C = A x B, walking k in the outer loop so that rows of
+     * B and C are read with their own stride rather than columns of B.
+     *
+     * @param A Left operand
+     * @param B Right operand
+     * @param C Output matrix
+     * @param i Row to compute
+     */
+    private static void multiplyRow(
+            final DenseMatrix A,
+            final DenseMatrix B,
+            final DenseMatrix C,
+            final int i
+    ) {
+        final double[] a = A.data();
+        final double[] b = B.data();
+        final double[] c = C.data();
+        final int K = A.getCols();
+        final int N = C.getCols();
+        final int bColStride = B.getColStride();
+        final int cColStride = C.getColStride();
+        final int aRow = A.offset() + i * A.getRowStride();
+        final int cRow = C.offset() + i * C.getRowStride();
+        for (int j = 0; j < N; j++) {
+            c[cRow + j * cColStride] = 0.0;
+        }
+        for (int k = 0; k < K; k++) {
+            final double aik = a[aRow + k * A.getColStride()];
+            final int bRow = B.offset() + k * B.getRowStride();
+            for (int j = 0; j < N; j++) {
+                c[cRow + j * cColStride] += aik * b[bRow + j * bColStride];
+            }
+        }
+    }
+
+    /**
+     * Check that A x B can be stored in C.
+     *
+     * @param A Left operand
+     * @param B Right operand
+     * @param C Output matrix
+     */
+    private static void checkProduct(final DenseMatrix A, final DenseMatrix B, final DenseMatrix C) {
+        if (A.getCols() != B.getRows() || C.getRows() != A.getRows() || C.getCols() != B.getCols()) {
+            throw new IllegalArgumentException("Cannot store a " + A.getRows() + "x" + A.getCols() + " by "
+                    + B.getRows() + "x" + B.getCols() + " product in a " + C.getRows() + "x" + C.getCols()
+                    + " matrix");
+        }
+        if (C.data() == A.data() || C.data() == B.data()) {
+            throw new IllegalArgumentException("The output matrix must not share storage with an input");
+        }
+    }
 }
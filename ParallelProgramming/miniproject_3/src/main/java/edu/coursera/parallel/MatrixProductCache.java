@@ -0,0 +1,309 @@
+package edu.coursera.parallel;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memory-bounded, thread-safe memoization layer in front of
+ * MatrixMultiply.parTiledMatrixMultiply, for callers that repeatedly multiply
+ * the same operands.
+ *
+ * Entries are keyed on the identity of both operands plus a stamp describing
+ * the contents of each. A stamp is either an explicit version supplied by the
+ * caller, who is then responsible for bumping it whenever the matrix is
+ * written, or a fingerprint computed over every element. Operands are only
+ * weakly referenced, so the cache never keeps an input alive.
+ *
+ * Products are stored as deep copies and copied out into the caller's output
+ * matrix on a hit, so neither later writes to C nor to the operands can
+ * change a cached product. Once the cached products exceed the byte budget,
+ * the least recently used ones are evicted; a product larger than the whole
+ * budget is never cached.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class MatrixProductCache {
+    /**
+     * Most bytes of cached products to retain.
+     */
+    private final long maxBytes;
+    /**
+     * Cached products in access order, guarded by its own monitor.
+     */
+    private final LinkedHashMap<Key, double[][]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Bytes of cached products currently retained, guarded by entries.
+     */
+    private long bytes;
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * Number of lookups that had to compute the product.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param setMaxBytes Most bytes of products to retain, must be positive
+     */
+    public MatrixProductCache(final long setMaxBytes) {
+        if (setMaxBytes <= 0) {
+            throw new IllegalArgumentException("Byte budget must be positive, got " + setMaxBytes);
+        }
+        this.maxBytes = setMaxBytes;
+    }
+
+    /**
+     * Compute C = A x B, reusing a previous product if the same operands with
+     * the same contents have been multiplied before. The contents are
+     * identified by fingerprints over all elements.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     */
+    public void multiply(
+            final double[][] A,
+            final double[][] B,
+            final double[][] C,
+            final int N
+    ) {
+        lookup(A, fingerprint(A, N), B, fingerprint(B, N), C, N);
+    }
+
+    /**
+     * Compute C = A x B, reusing a previous product if the same operands have
+     * been multiplied before with the same versions. Callers must pass a new
+     * version after every write to an operand.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param versionA Caller-maintained version stamp of A
+     * @param B An input matrix with dimensions NxN
+     * @param versionB Caller-maintained version stamp of B
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     */
+    public void multiply(
+            final double[][] A,
+            final long versionA,
+            final double[][] B,
+            final long versionB,
+            final double[][] C,
+            final int N
+    ) {
+        lookup(A, versionA, B, versionB, C, N);
+    }
+
+    /**
+     * Get the number of lookups answered from the cache.
+     * @return Cache hit count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups that had to compute the product.
+     * @return Cache miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of products currently retained.
+     * @return Number of cached entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Get the memory held by cached products.
+     * @return Bytes of cached matrix elements
+     */
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    /**
+     * Drop every cached product. The hit and miss counters are left
+     * untouched.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Compute a 64-bit fingerprint of the top-left NxN block of a matrix.
+     *
+     * @param M Matrix
+     * @param N Size of each dimension to cover
+     * @return Fingerprint of the matrix contents
+     */
+    static long fingerprint(final double[][] M, final int N) {
+        long h = N;
+        for (int i = 0; i < N; i++) {
+            final double[] row = M[i];
+            for (int j = 0; j < N; j++) {
+                h = (h ^ Double.doubleToRawLongBits(row[j])) * 0x9E3779B97F4A7C15L;
+            }
+        }
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Look up the product under the given stamps, computing and caching it on
+     * a miss. The product is computed and copied outside of the lock, so two
+     * concurrent misses on the same key may both compute it.
+     *
+     * @param A Left operand
+     * @param stampA Fingerprint or version of A
+     * @param B Right operand
+     * @param stampB Fingerprint or version of B
+     * @param C The output matrix
+     * @param N Size of each dimension of the matrices
+     */
+    private void lookup(
+            final double[][] A,
+            final long stampA,
+            final double[][] B,
+            final long stampB,
+            final double[][] C,
+            final int N
+    ) {
+        final Key key = new Key(A, stampA, B, stampB, N);
+        final double[][] cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            copy(cached, C, N);
+            return;
+        }
+
+        misses.incrementAndGet();
+        MatrixMultiply.parTiledMatrixMultiply(A, B, C, N);
+        final long productBytes = (long) N * N * Double.BYTES;
+        if (productBytes > maxBytes) {
+            return;
+        }
+        final double[][] product = new double[N][N];
+        copy(C, product, N);
+        synchronized (entries) {
+            final double[][] previous = entries.put(key, product);
+            if (previous == null) {
+                bytes += productBytes;
+            }
+            final Iterator<double[][]> eldest = entries.values().iterator();
+            while (bytes > maxBytes) {
+                final double[][] evicted = eldest.next();
+                bytes -= (long) evicted.length * evicted.length * Double.BYTES;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Copy the top-left NxN block of one matrix into another.
+     *
+     * @param from Source matrix
+     * @param to Destination matrix
+     * @param N Size of each dimension to copy
+     */
+    private static void copy(final double[][] from, final double[][] to, final int N) {
+        for (int i = 0; i < N; i++) {
+            System.arraycopy(from[i], 0, to[i], 0, N);
+        }
+    }
+
+    /**
+     * Cache key matching both operands by reference together with stamps of
+     * their contents.
+     */
+    private static final class Key {
+        /**
+         * Left operand, cleared once it is collected.
+         */
+        private final WeakReference<double[][]> left;
+        /**
+         * Right operand, cleared once it is collected.
+         */
+        private final WeakReference<double[][]> right;
+        /**
+         * Identity hashes of the operands, kept so the key stays hashable
+         * after they have been collected.
+         */
+        private final int identity;
+        /**
+         * Fingerprint or version of the left operand.
+         */
+        private final long leftStamp;
+        /**
+         * Fingerprint or version of the right operand.
+         */
+        private final long rightStamp;
+        /**
+         * Size of each dimension of the product.
+         */
+        private final int size;
+
+        /**
+         * Constructor.
+         * @param setLeft Left operand
+         * @param setLeftStamp Fingerprint or version of the left operand
+         * @param setRight Right operand
+         * @param setRightStamp Fingerprint or version of the right operand
+         * @param setSize Size of each dimension of the product
+         */
+        Key(
+                final double[][] setLeft,
+                final long setLeftStamp,
+                final double[][] setRight,
+                final long setRightStamp,
+                final int setSize
+        ) {
+            this.left = new WeakReference<>(setLeft);
+            this.right = new WeakReference<>(setRight);
+            this.identity = 31 * System.identityHashCode(setLeft) + System.identityHashCode(setRight);
+            this.leftStamp = setLeftStamp;
+            this.rightStamp = setRightStamp;
+            this.size = setSize;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            final double[][] leftReferent = left.get();
+            final double[][] rightReferent = right.get();
+            return identity == other.identity && size == other.size
+                && leftStamp == other.leftStamp && rightStamp == other.rightStamp
+                && leftReferent != null && leftReferent == other.left.get()
+                && rightReferent != null && rightReferent == other.right.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * identity + Long.hashCode(leftStamp)) * 31 + Long.hashCode(rightStamp);
+        }
+    }
+}
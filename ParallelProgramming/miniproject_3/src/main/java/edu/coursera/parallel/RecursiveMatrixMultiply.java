@@ -0,0 +1,303 @@
+package edu.coursera.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A divide-and-conquer matrix multiply on fork/join tasks. Each task halves
+ * every dimension of its product that is larger than the leaf size: the
+ * quadrants of C are computed in parallel, and the two halves of the shared
+ * dimension contributing to one quadrant are accumulated into it one after
+ * the other. Products no larger than the leaf size in every dimension are
+ * computed sequentially by the cache-blocked kernel.
+ *
+ * Square products with an even size of at least the Strassen cutoff take a
+ * Strassen step instead: seven half-size products are computed in parallel
+ * from sums of quadrants, trading one multiply for eighteen additions. Each
+ * step allocates about five times the size of its operands in temporaries
+ * and loosens the rounding error bound, so the cutoff should sit at the
+ * crossover measured on the target hardware.
+ */
+final class RecursiveMatrixMultiply {
+
+    /**
+     * Default constructor.
+     */
+    private RecursiveMatrixMultiply() {
+    }
+
+    /**
+     * Task computing C = A x B, or C += A x B, for views of the operands.
+     * All three must have contiguous rows, and C must not share storage with
+     * A or B.
+     */
+    static final class MultiplyTask extends RecursiveAction {
+        /**
+         * Left operand.
+         */
+        private final DenseMatrix A;
+        /**
+         * Right operand.
+         */
+        private final DenseMatrix B;
+        /**
+         * Output matrix.
+         */
+        private final DenseMatrix C;
+        /**
+         * Whether to add the product to C rather than store it.
+         */
+        private final boolean accumulate;
+        /**
+         * Largest dimension computed without splitting.
+         */
+        private final int leafSize;
+        /**
+         * Smallest square size that takes a Strassen step.
+         */
+        private final int strassenCutoff;
+
+        /**
+         * Constructor.
+         * @param setA Left operand, with dimensions MxK
+         * @param setB Right operand, with dimensions KxN
+         * @param setC Output matrix, with dimensions MxN
+         * @param setAccumulate true to add the product to C
+         * @param setLeafSize Largest dimension computed without splitting
+         * @param setStrassenCutoff Smallest square size that takes a Strassen
+         *        step
+         */
+        MultiplyTask(
+                final DenseMatrix setA,
+                final DenseMatrix setB,
+                final DenseMatrix setC,
+                final boolean setAccumulate,
+                final int setLeafSize,
+                final int setStrassenCutoff
+        ) {
+            this.A = setA;
+            this.B = setB;
+            this.C = setC;
+            this.accumulate = setAccumulate;
+            this.leafSize = setLeafSize;
+            this.strassenCutoff = setStrassenCutoff;
+        }
+
+        @Override
+        protected void compute() {
+            final int M = A.getRows();
+            final int K = A.getCols();
+            final int N = B.getCols();
+            if (M <= leafSize && K <= leafSize && N <= leafSize) {
+                TiledMatrixMultiply.multiplySequential(A, B, C, accumulate);
+            } else if (M == K && K == N && N % 2 == 0 && N >= strassenCutoff) {
+                strassen();
+            } else {
+                quadrants(M, K, N);
+            }
+        }
+
+        /**
+         * Split every dimension larger than the leaf size in half, compute
+         * the blocks of C in parallel, and accumulate the halves of K into
+         * each block in turn.
+         *
+         * @param M Rows of C
+         * @param K Length of the shared dimension
+         * @param N Columns of C
+         */
+        private void quadrants(final int M, final int K, final int N) {
+            final int mh = M > leafSize ? M / 2 : M;
+            final int kh = K > leafSize ? K / 2 : K;
+            final int nh = N > leafSize ? N / 2 : N;
+            final List<QuadrantTask> blocks = new ArrayList<>(4);
+            for (int i0 = 0; i0 < M; i0 = i0 == 0 ? mh : M) {
+                final int rows = i0 == 0 ? mh : M - mh;
+                for (int j0 = 0; j0 < N; j0 = j0 == 0 ? nh : N) {
+                    final int cols = j0 == 0 ? nh : N - nh;
+                    final DenseMatrix c = C.view(i0, j0, rows, cols);
+                    if (kh == K) {
+                        blocks.add(new QuadrantTask(A.view(i0, 0, rows, K), B.view(0, j0, K, cols), c,
+                                null, null, this));
+                    } else {
+                        blocks.add(new QuadrantTask(A.view(i0, 0, rows, kh), B.view(0, j0, kh, cols), c,
+                                A.view(i0, kh, rows, K - kh), B.view(kh, j0, K - kh, cols), this));
+                    }
+                }
+            }
+            invokeAll(blocks);
+        }
+
+        /**
+         * Compute the product with one Strassen step over the quadrants of
+         * the operands, recursing into seven half-size products in parallel.
+         */
+        private void strassen() {
+            final int h = A.getRows() / 2;
+            final DenseMatrix a11 = A.view(0, 0, h, h);
+            final DenseMatrix a12 = A.view(0, h, h, h);
+            final DenseMatrix a21 = A.view(h, 0, h, h);
+            final DenseMatrix a22 = A.view(h, h, h, h);
+            final DenseMatrix b11 = B.view(0, 0, h, h);
+            final DenseMatrix b12 = B.view(0, h, h, h);
+            final DenseMatrix b21 = B.view(h, 0, h, h);
+            final DenseMatrix b22 = B.view(h, h, h, h);
+
+            final DenseMatrix[] m = new DenseMatrix[7];
+            for (int p = 0; p < m.length; p++) {
+                m[p] = new DenseMatrix(h, h);
+            }
+            invokeAll(
+                    product(sum(a11, a22, 1), sum(b11, b22, 1), m[0]),
+                    product(sum(a21, a22, 1), b11, m[1]),
+                    product(a11, sum(b12, b22, -1), m[2]),
+                    product(a22, sum(b21, b11, -1), m[3]),
+                    product(sum(a11, a12, 1), b22, m[4]),
+                    product(sum(a21, a11, -1), sum(b11, b12, 1), m[5]),
+                    product(sum(a12, a22, -1), sum(b21, b22, 1), m[6]));
+
+            combine(C.view(0, 0, h, h), m[0], 1, m[3], 1, m[4], -1, m[6], 1);
+            combine(C.view(0, h, h, h), m[2], 1, m[4], 1, null, 0, null, 0);
+            combine(C.view(h, 0, h, h), m[1], 1, m[3], 1, null, 0, null, 0);
+            combine(C.view(h, h, h, h), m[0], 1, m[1], -1, m[2], 1, m[5], 1);
+        }
+
+        /**
+         * Create a task storing x times y into out with the same parameters
+         * as this one.
+         *
+         * @param x Left operand
+         * @param y Right operand
+         * @param out Output matrix
+         * @return Task computing the product
+         */
+        private MultiplyTask product(final DenseMatrix x, final DenseMatrix y, final DenseMatrix out) {
+            return new MultiplyTask(x, y, out, false, leafSize, strassenCutoff);
+        }
+
+        /**
+         * Store or add a signed sum of up to four Strassen products into a
+         * quadrant of C. Unused terms are passed as null.
+         *
+         * @param c Quadrant of C
+         * @param m0 First product
+         * @param s0 Sign of the first product
+         * @param m1 Second product
+         * @param s1 Sign of the second product
+         * @param m2 Third product, or null
+         * @param s2 Sign of the third product
+         * @param m3 Fourth product, or null
+         * @param s3 Sign of the fourth product
+         */
+        private void combine(
+                final DenseMatrix c,
+                final DenseMatrix m0, final double s0,
+                final DenseMatrix m1, final double s1,
+                final DenseMatrix m2, final double s2,
+                final DenseMatrix m3, final double s3
+        ) {
+            final int h = c.getRows();
+            final double[] out = c.data();
+            for (int i = 0; i < h; i++) {
+                final int row = c.offset() + i * c.getRowStride();
+                final int src = i * h;
+                for (int j = 0; j < h; j++) {
+                    double v = s0 * m0.data()[src + j] + s1 * m1.data()[src + j];
+                    if (m2 != null) {
+                        v += s2 * m2.data()[src + j] + s3 * m3.data()[src + j];
+                    }
+                    out[row + j] = accumulate ? out[row + j] + v : v;
+                }
+            }
+        }
+    }
+
+    /**
+     * Task computing one block of C as the sum of one or two products over
+     * halves of the shared dimension, one after the other since both write
+     * the same block.
+     */
+    private static final class QuadrantTask extends RecursiveAction {
+        /**
+         * Left operand of the first product.
+         */
+        private final DenseMatrix A1;
+        /**
+         * Right operand of the first product.
+         */
+        private final DenseMatrix B1;
+        /**
+         * Block of C to compute.
+         */
+        private final DenseMatrix C;
+        /**
+         * Left operand of the second product, or null if K was not split.
+         */
+        private final DenseMatrix A2;
+        /**
+         * Right operand of the second product, or null if K was not split.
+         */
+        private final DenseMatrix B2;
+        /**
+         * Task that was split, providing the accumulate flag and tuning.
+         */
+        private final MultiplyTask parent;
+
+        /**
+         * Constructor.
+         * @param setA1 Left operand of the first product
+         * @param setB1 Right operand of the first product
+         * @param setC Block of C to compute
+         * @param setA2 Left operand of the second product, or null
+         * @param setB2 Right operand of the second product, or null
+         * @param setParent Task that was split
+         */
+        QuadrantTask(
+                final DenseMatrix setA1,
+                final DenseMatrix setB1,
+                final DenseMatrix setC,
+                final DenseMatrix setA2,
+                final DenseMatrix setB2,
+                final MultiplyTask setParent
+        ) {
+            this.A1 = setA1;
+            this.B1 = setB1;
+            this.C = setC;
+            this.A2 = setA2;
+            this.B2 = setB2;
+            this.parent = setParent;
+        }
+
+        @Override
+        protected void compute() {
+            new MultiplyTask(A1, B1, C, parent.accumulate, parent.leafSize, parent.strassenCutoff).compute();
+            if (A2 != null) {
+                new MultiplyTask(A2, B2, C, true, parent.leafSize, parent.strassenCutoff).compute();
+            }
+        }
+    }
+
+    /**
+     * Compute x + sign * y into new row-major storage.
+     *
+     * @param x Left term, with contiguous rows
+     * @param y Right term, with contiguous rows
+     * @param sign 1 to add y, -1 to subtract it
+     * @return The sum
+     */
+    static DenseMatrix sum(final DenseMatrix x, final DenseMatrix y, final double sign) {
+        final int rows = x.getRows();
+        final int cols = x.getCols();
+        final DenseMatrix out = new DenseMatrix(rows, cols);
+        final double[] o = out.data();
+        for (int i = 0; i < rows; i++) {
+            final int xr = x.offset() + i * x.getRowStride();
+            final int yr = y.offset() + i * y.getRowStride();
+            for (int j = 0; j < cols; j++) {
+                o[i * cols + j] = x.data()[xr + j] + sign * y.data()[yr + j];
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,354 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel products with a CSR left operand. Rows are cut into a few
+ * partitions per worker holding roughly equal work, rather than equal row
+ * counts, so that a handful of dense rows does not leave one worker doing
+ * most of the product. The work of a row is its number of non-zeros for
+ * products with a dense right operand, and the number of multiply-adds it
+ * needs for products with a sparse right operand; every row also counts one
+ * so that long runs of empty rows are spread out too.
+ *
+ * Partitions run as a parallel stream rather than a PCDP forall: a
+ * matrix-vector product can take microseconds, and PCDP's finish scopes
+ * were seen to hang after some 10^5 back-to-back short foralls. Like other
+ * parallel streams, the partitions run on the calling ForkJoinPool when
+ * there is one and on the common pool otherwise.
+ */
+final class SparseMatrixMultiply {
+    /**
+     * Row partitions per worker thread, leaving slack for uneven progress.
+     */
+    static final int PARTITIONS_PER_THREAD = 4;
+    /**
+     * Widest right operand for which every partition of a sparse-sparse
+     * product gets a dense accumulator regardless of its rows, 1 MB of
+     * accumulator state.
+     */
+    static final int DENSE_ACCUMULATOR_COLUMNS = 1 << 16;
+
+    /**
+     * Default constructor.
+     */
+    private SparseMatrixMultiply() {
+    }
+
+    /**
+     * Compute y = A x, in parallel over row partitions.
+     *
+     * @param A Sparse matrix with dimensions MxN
+     * @param x Vector of length N
+     * @param y Output vector of length M
+     */
+    static void multiply(final CsrMatrix A, final double[] x, final double[] y) {
+        final int[] rowPtr = A.rowPtr();
+        final int[] colIdx = A.colIdx();
+        final double[] values = A.values();
+        final int[] bounds = partition(nonZeroWork(A));
+        IntStream.range(0, bounds.length - 1).parallel().forEach(part -> {
+            for (int i = bounds[part]; i < bounds[part + 1]; i++) {
+                double sum = 0.0;
+                for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                    sum += values[p] * x[colIdx[p]];
+                }
+                y[i] = sum;
+            }
+        });
+    }
+
+    /**
+     * Compute C = A x B for a dense B, in parallel over row partitions. Each
+     * non-zero of A scales one row of B into the matching row of C.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Dense matrix with dimensions KxN
+     * @param C Output matrix with dimensions MxN
+     */
+    static void multiply(final CsrMatrix A, final DenseMatrix B, final DenseMatrix C) {
+        final int[] rowPtr = A.rowPtr();
+        final int[] colIdx = A.colIdx();
+        final double[] values = A.values();
+        final double[] b = B.data();
+        final double[] c = C.data();
+        final int N = C.getCols();
+        final int bColStride = B.getColStride();
+        final int cColStride = C.getColStride();
+        final int[] bounds = partition(nonZeroWork(A));
+        IntStream.range(0, bounds.length - 1).parallel().forEach(part -> {
+            for (int i = bounds[part]; i < bounds[part + 1]; i++) {
+                final int cRow = C.offset() + i * C.getRowStride();
+                for (int j = 0; j < N; j++) {
+                    c[cRow + j * cColStride] = 0.0;
+                }
+                for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                    final double aik = values[p];
+                    final int bRow = B.offset() + colIdx[p] * B.getRowStride();
+                    for (int j = 0; j < N; j++) {
+                        c[cRow + j * cColStride] += aik * b[bRow + j * bColStride];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Compute A x B for a sparse B with Gustavson's row-by-row algorithm, in
+     * parallel over row partitions. Each partition scatters its rows into an
+     * accumulator, gathers the touched columns in order, and keeps its rows
+     * in local arrays; the partitions are then concatenated. Entries that
+     * cancel to exactly zero are dropped.
+     *
+     * The accumulator is dense, as wide as B, when B has at most
+     * DENSE_ACCUMULATOR_COLUMNS columns or some row of the partition does at
+     * least a quarter as many multiply-adds as B has columns. Otherwise it is
+     * a hash table sized to the partition's busiest row, so that accumulator
+     * memory grows with the work of the partitions rather than with their
+     * number times the width of B.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Sparse matrix with dimensions KxN
+     * @return Sparse product with dimensions MxN
+     */
+    static CsrMatrix multiply(final CsrMatrix A, final CsrMatrix B) {
+        final int M = A.getRows();
+        final int N = B.getCols();
+        final int[] aRowPtr = A.rowPtr();
+        final int[] aColIdx = A.colIdx();
+        final double[] aValues = A.values();
+        final int[] bRowPtr = B.rowPtr();
+        final int[] bColIdx = B.colIdx();
+        final double[] bValues = B.values();
+
+        final long[] work = new long[M + 1];
+        for (int i = 0; i < M; i++) {
+            long flops = 1;
+            for (int p = aRowPtr[i]; p < aRowPtr[i + 1]; p++) {
+                flops += bRowPtr[aColIdx[p] + 1] - bRowPtr[aColIdx[p]];
+            }
+            work[i + 1] = work[i] + flops;
+        }
+        final int[] bounds = partition(work);
+        final int parts = bounds.length - 1;
+        final int[] rowLength = new int[M];
+        final int[][] partCols = new int[parts][];
+        final double[][] partValues = new double[parts][];
+
+        IntStream.range(0, parts).parallel().forEach(part -> {
+            long rowFlops = 0;
+            for (int i = bounds[part]; i < bounds[part + 1]; i++) {
+                rowFlops = Math.max(rowFlops, work[i + 1] - work[i] - 1);
+            }
+            final RowAccumulator accumulator = new RowAccumulator(N, rowFlops);
+            int[] cols = new int[16];
+            double[] vals = new double[16];
+            int size = 0;
+            for (int i = bounds[part]; i < bounds[part + 1]; i++) {
+                accumulator.clear();
+                for (int p = aRowPtr[i]; p < aRowPtr[i + 1]; p++) {
+                    final double aik = aValues[p];
+                    final int k = aColIdx[p];
+                    for (int q = bRowPtr[k]; q < bRowPtr[k + 1]; q++) {
+                        accumulator.add(bColIdx[q], aik * bValues[q]);
+                    }
+                }
+                if (size + accumulator.count > cols.length) {
+                    final int capacity = Math.max(cols.length * 2, size + accumulator.count);
+                    cols = Arrays.copyOf(cols, capacity);
+                    vals = Arrays.copyOf(vals, capacity);
+                }
+                final int rowEnd = accumulator.gather(cols, vals, size);
+                rowLength[i] = rowEnd - size;
+                size = rowEnd;
+            }
+            partCols[part] = Arrays.copyOf(cols, size);
+            partValues[part] = Arrays.copyOf(vals, size);
+        });
+
+        final int[] rowPtr = new int[M + 1];
+        for (int i = 0; i < M; i++) {
+            rowPtr[i + 1] = rowPtr[i] + rowLength[i];
+        }
+        final int[] colIdx = new int[rowPtr[M]];
+        final double[] values = new double[rowPtr[M]];
+        IntStream.range(0, parts).parallel().forEach(part -> {
+            final int start = rowPtr[bounds[part]];
+            System.arraycopy(partCols[part], 0, colIdx, start, partCols[part].length);
+            System.arraycopy(partValues[part], 0, values, start, partValues[part].length);
+        });
+        return new CsrMatrix(M, N, rowPtr, colIdx, values);
+    }
+
+    /**
+     * Prefix sums of the work of each row for products with a dense right
+     * operand: its non-zeros plus one.
+     *
+     * @param A Sparse matrix
+     * @return Work before each row, rows + 1 long
+     */
+    static long[] nonZeroWork(final CsrMatrix A) {
+        final int[] rowPtr = A.rowPtr();
+        final long[] work = new long[A.getRows() + 1];
+        for (int i = 0; i <= A.getRows(); i++) {
+            work[i] = (long) rowPtr[i] + i;
+        }
+        return work;
+    }
+
+    /**
+     * Cut rows into partitions of roughly equal work. Partition p covers
+     * rows bounds[p] to bounds[p + 1] - 1; partitions may be empty when a
+     * single row outweighs a share.
+     *
+     * @param work Prefix sums of the work of each row, rows + 1 long
+     * @return Partition boundaries, from 0 to the number of rows
+     */
+    static int[] partition(final long[] work) {
+        final int rows = work.length - 1;
+        final ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        final int parts = Math.max(1, Math.min(rows, pool.getParallelism() * PARTITIONS_PER_THREAD));
+        final long total = work[rows];
+        final int[] bounds = new int[parts + 1];
+        for (int p = 1; p < parts; p++) {
+            final long target = total * p / parts;
+            int row = Arrays.binarySearch(work, bounds[p - 1], rows + 1, target);
+            if (row < 0) {
+                row = -row - 1;
+            }
+            bounds[p] = Math.min(row, rows);
+        }
+        bounds[parts] = rows;
+        return bounds;
+    }
+
+    /**
+     * Scatters the products of one row of a Gustavson product into sums per
+     * column and gathers the columns touched in order, for one row after
+     * another. A dense accumulator indexes its arrays by column; a hashed one
+     * keeps columns in an open-addressed table at least twice as large as the
+     * most columns a row can touch, so it never fills up.
+     */
+    private static final class RowAccumulator {
+        /**
+         * Sum of each column (dense) or slot (hashed).
+         */
+        private final double[] sums;
+        /**
+         * Dense: number of the row that last touched each column, counting
+         * from 1, 0 if none. Hashed: 1 + the column held by each slot, 0 if
+         * the slot is free.
+         */
+        private final int[] tags;
+        /**
+         * Dense: columns touched by the current row. Hashed: the column in
+         * the high half and its slot in the low half, so that sorting orders
+         * them by column.
+         */
+        private final long[] touched;
+        /**
+         * Hashed: bits of the table size. 0 for a dense accumulator.
+         */
+        private final int bits;
+        /**
+         * Number of rows started, the tag of the current row when dense.
+         */
+        private int row;
+        /**
+         * Number of columns touched by the current row.
+         */
+        private int count;
+
+        /**
+         * Constructor.
+         *
+         * @param width Number of columns of the product
+         * @param rowFlops Most multiply-adds done by any row to accumulate
+         */
+        RowAccumulator(final int width, final long rowFlops) {
+            final int maxTouched = (int) Math.min(width, rowFlops);
+            this.touched = new long[maxTouched];
+            if (width <= DENSE_ACCUMULATOR_COLUMNS || rowFlops >= width / 4) {
+                this.bits = 0;
+                this.sums = new double[width];
+                this.tags = new int[width];
+            } else {
+                this.bits = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(1, 2 * maxTouched - 1));
+                this.sums = new double[1 << bits];
+                this.tags = new int[1 << bits];
+            }
+        }
+
+        /**
+         * Start a new row, forgetting the sums of the previous one.
+         */
+        void clear() {
+            if (bits == 0) {
+                row++;
+            } else {
+                for (int t = 0; t < count; t++) {
+                    tags[(int) touched[t]] = 0;
+                }
+            }
+            count = 0;
+        }
+
+        /**
+         * Add a product to the sum of a column.
+         *
+         * @param j Column
+         * @param value Product to add
+         */
+        void add(final int j, final double value) {
+            if (bits == 0) {
+                if (tags[j] != row) {
+                    tags[j] = row;
+                    sums[j] = 0.0;
+                    touched[count++] = j;
+                }
+                sums[j] += value;
+                return;
+            }
+            final int mask = (1 << bits) - 1;
+            int slot = (j * 0x9E3779B1) >>> (Integer.SIZE - bits);
+            while (tags[slot] != j + 1) {
+                if (tags[slot] == 0) {
+                    tags[slot] = j + 1;
+                    sums[slot] = 0.0;
+                    touched[count++] = (long) j << Integer.SIZE | slot;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            sums[slot] += value;
+        }
+
+        /**
+         * Append the non-zero sums of the current row in column order.
+         *
+         * @param cols Columns of the rows gathered so far, with room for
+         *        count more
+         * @param vals Values of the rows gathered so far, with room for count
+         *        more
+         * @param size Number of entries already in cols and vals
+         * @return Number of entries in cols and vals after this row
+         */
+        int gather(final int[] cols, final double[] vals, final int size) {
+            Arrays.sort(touched, 0, count);
+            int end = size;
+            for (int t = 0; t < count; t++) {
+                final int j = bits == 0 ? (int) touched[t] : (int) (touched[t] >>> Integer.SIZE);
+                final double sum = sums[bits == 0 ? j : (int) touched[t]];
+                if (sum != 0.0) {
+                    cols[end] = j;
+                    vals[end] = sum;
+                    end++;
+                }
+            }
+            return end;
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A cache-blocked matrix multiply. B is first packed into panels of NR
+ * columns, each stored k-major so that a micro-kernel streams through it with
+ * unit stride. C is then cut into MC x NC tiles, computed in parallel, and
+ * within a tile the k dimension is walked in blocks of KC so that the KC x NR
+ * slice of B being used stays in L1 and the MC x KC slice of A stays in L2.
+ * The micro-kernel keeps an MR x NR block of C in local variables for a whole
+ * k block instead of loading and storing C on every multiply-add.
+ *
+ * The kernel works on flat DenseMatrix storage, so rows of A and C are
+ * addressed by offset into one array rather than through per-row arrays.
+ * The tiling and packing are shared with FloatMatrixMultiply through
+ * forEachTile, forEachBlock and the float overload of packB, which take the
+ * kernel to run on each tile or block as a callback.
+ *
+ * Tiles and panels run as parallel streams rather than PCDP foralls, since
+ * callers such as BatchedMatrixMultiply and MatrixProductCache issue many
+ * short products back to back and PCDP's finish scopes were seen to hang
+ * under that load. They run on the calling ForkJoinPool when there is one
+ * and on the common pool otherwise.
+ */
+final class TiledMatrixMultiply {
+    /**
+     * Rows of C computed by one micro-kernel call.
+     */
+    static final int MR = 4;
+    /**
+     * Columns of C computed by one micro-kernel call, and width of a packed B
+     * panel.
+     */
+    static final int NR = 4;
+    /**
+     * Length of a block of the k dimension.
+     */
+    static final int KC = 256;
+    /**
+     * Rows of C per parallel tile.
+     */
+    static final int MC = 64;
+    /**
+     * Columns of C per parallel tile, a multiple of NR.
+     */
+    static final int NC = 256;
+
+    /**
+     * Computes one tile of C, as cut by forEachTile.
+     */
+    interface TileKernel {
+        /**
+         * Compute the tile.
+         *
+         * @param rowStart First row of the tile, a multiple of MC
+         * @param rowEnd First row past the tile
+         * @param colStart First column of the tile, a multiple of NC
+         * @param colEnd First column past the tile
+         */
+        void compute(int rowStart, int rowEnd, int colStart, int colEnd);
+    }
+
+    /**
+     * Computes one block of C of at most MR x NR elements over one k block,
+     * as cut by forEachBlock.
+     */
+    interface BlockKernel {
+        /**
+         * Compute the block.
+         *
+         * @param i First row of the block
+         * @param height Number of rows in the block, at most MR
+         * @param j First column of the block, a multiple of NR
+         * @param width Number of columns in the block, at most NR
+         * @param k0 First k of the block, 0 for the block that must store
+         *        rather than add to C
+         * @param depth Length of the k block
+         * @param panelOffset Index of element (k0, j) in B packed by packB
+         */
+        void compute(int i, int height, int j, int width, int k0, int depth, int panelOffset);
+    }
+
+    /**
+     * Default constructor.
+     */
+    private TiledMatrixMultiply() {
+    }
+
+    /**
+     * Compute C = A x B in parallel over tiles of C. A and C are copied into
+     * flat row-major storage and back, which is O(N^2) next to the O(N^3)
+     * multiply.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     */
+    static void multiply(
+            final double[][] A,
+            final double[][] B,
+            final double[][] C,
+            final int N
+    ) {
+        final DenseMatrix product = new DenseMatrix(N, N);
+        multiply(DenseMatrix.copyOf(A, N, N), DenseMatrix.copyOf(B, N, N), product);
+        product.copyInto(C);
+    }
+
+    /**
+     * Compute C = A x B in parallel over tiles of C. The dimensions are
+     * expected to have been checked by the caller, and C must not share
+     * storage with A or B. Operands whose rows are not contiguous are copied
+     * first; if C's rows are not contiguous the product is computed into
+     * scratch storage and copied into C.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix with dimensions MxN
+     */
+    static void multiply(final DenseMatrix A, final DenseMatrix B, final DenseMatrix C) {
+        final int M = A.getRows();
+        final int K = A.getCols();
+        final int N = B.getCols();
+        if (M == 0 || N == 0) {
+            return;
+        }
+        final DenseMatrix a = A.hasContiguousRows() ? A : A.copy();
+        final DenseMatrix c = C.hasContiguousRows() ? C : new DenseMatrix(M, N);
+        if (K == 0) {
+            fillZero(c);
+        } else {
+            final double[] packedB = packB(B);
+            forEachTile(M, N, (rowStart, rowEnd, colStart, colEnd) ->
+                    multiplyTile(a, packedB, c, K, rowStart, rowEnd, colStart, colEnd, false));
+        }
+        if (c != C) {
+            for (int i = 0; i < M; i++) {
+                for (int j = 0; j < N; j++) {
+                    C.set(i, j, c.get(i, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy B into column panels of width NR, in parallel. Panel p holds
+     * columns p * NR to p * NR + NR - 1, row after row, so element (k, j)
+     * lands at ((j / NR) * K + k) * NR + j % NR. Columns past the last one
+     * are padded with zeros.
+     *
+     * @param B Matrix to pack, with dimensions KxN
+     * @return Packed panels
+     */
+    static double[] packB(final DenseMatrix B) {
+        final int panels = (B.getCols() + NR - 1) / NR;
+        final double[] packed = new double[panels * B.getRows() * NR];
+        IntStream.range(0, panels).parallel().forEach(p -> packPanel(B, p, packed));
+        return packed;
+    }
+
+    /**
+     * Copy B into column panels of width NR sequentially, in the layout of
+     * packB.
+     *
+     * @param B Matrix to pack, with dimensions KxN
+     * @return Packed panels
+     */
+    static double[] packBSequential(final DenseMatrix B) {
+        final int panels = (B.getCols() + NR - 1) / NR;
+        final double[] packed = new double[panels * B.getRows() * NR];
+        for (int p = 0; p < panels; p++) {
+            packPanel(B, p, packed);
+        }
+        return packed;
+    }
+
+    /**
+     * Copy a row-major float B into column panels of width NR, in parallel,
+     * in the layout of packB.
+     *
+     * @param B Matrix to pack, row-major
+     * @param K Rows of B
+     * @param N Columns of B
+     * @return Packed panels
+     */
+    static float[] packB(final float[] B, final int K, final int N) {
+        final int panels = (N + NR - 1) / NR;
+        final float[] packed = new float[panels * K * NR];
+        IntStream.range(0, panels).parallel().forEach(p -> {
+            final int firstCol = p * NR;
+            final int width = Math.min(NR, N - firstCol);
+            for (int k = 0; k < K; k++) {
+                System.arraycopy(B, k * N + firstCol, packed, (p * K + k) * NR, width);
+            }
+        });
+        return packed;
+    }
+
+    /**
+     * Copy A into row panels of height MR, in parallel. Panel p holds rows
+     * p * MR to p * MR + MR - 1, column after column, so element (i, k)
+     * lands at ((i / MR) * K + k) * MR + i % MR and the micro-kernel reads
+     * A with unit stride too. Rows past the last one are padded with zeros.
+     *
+     * @param A Matrix to pack, with dimensions MxK
+     * @return Packed panels
+     */
+    static double[] packA(final DenseMatrix A) {
+        final int K = A.getCols();
+        final int panels = (A.getRows() + MR - 1) / MR;
+        final double[] packed = new double[panels * K * MR];
+        final double[] data = A.data();
+        final int rowStride = A.getRowStride();
+        final int colStride = A.getColStride();
+        IntStream.range(0, panels).parallel().forEach(p -> {
+            final int height = Math.min(MR, A.getRows() - p * MR);
+            for (int r = 0; r < height; r++) {
+                final int src = A.offset() + (p * MR + r) * rowStride;
+                int dst = p * K * MR + r;
+                for (int k = 0; k < K; k++, dst += MR) {
+                    packed[dst] = data[src + k * colStride];
+                }
+            }
+        });
+        return packed;
+    }
+
+    /**
+     * Compute C = A x B, or C += A x B, sequentially in the calling thread.
+     * A and C must have contiguous rows, and the dimensions are expected to
+     * have been checked by the caller.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix with dimensions MxN
+     * @param accumulate true to add the product to C rather than store it
+     */
+    static void multiplySequential(
+            final DenseMatrix A,
+            final DenseMatrix B,
+            final DenseMatrix C,
+            final boolean accumulate
+    ) {
+        final int K = A.getCols();
+        if (K == 0) {
+            if (!accumulate) {
+                fillZero(C);
+            }
+            return;
+        }
+        multiplyTile(A, packBSequential(B), C, K, 0, C.getRows(), 0, C.getCols(), accumulate);
+    }
+
+    /**
+     * Copy one NR-column panel of B into its slot of the packed panels.
+     *
+     * @param B Matrix to pack, with dimensions KxN
+     * @param p Index of the panel
+     * @param packed Packed panels
+     */
+    private static void packPanel(final DenseMatrix B, final int p, final double[] packed) {
+        final int K = B.getRows();
+        final double[] data = B.data();
+        final int rowStride = B.getRowStride();
+        final int colStride = B.getColStride();
+        final int firstCol = p * NR;
+        final int width = Math.min(NR, B.getCols() - firstCol);
+        int dst = p * K * NR;
+        int src = B.offset() + firstCol * colStride;
+        for (int k = 0; k < K; k++, src += rowStride, dst += NR) {
+            if (colStride == 1) {
+                System.arraycopy(data, src, packed, dst, width);
+            } else {
+                for (int col = 0; col < width; col++) {
+                    packed[dst + col] = data[src + col * colStride];
+                }
+            }
+        }
+    }
+
+    /**
+     * Cut an MxN product into MC x NC tiles and compute them in parallel.
+     *
+     * @param M Rows of C
+     * @param N Columns of C
+     * @param kernel Computes one tile
+     */
+    static void forEachTile(final int M, final int N, final TileKernel kernel) {
+        final int rowTiles = (M + MC - 1) / MC;
+        final int colTiles = (N + NC - 1) / NC;
+        IntStream.range(0, rowTiles * colTiles).parallel().forEach(tile -> {
+            final int ti = tile % rowTiles;
+            final int tj = tile / rowTiles;
+            kernel.compute(ti * MC, Math.min(M, (ti + 1) * MC), tj * NC, Math.min(N, (tj + 1) * NC));
+        });
+    }
+
+    /**
+     * Walk one tile of C sequentially in blocks of MR rows by one NR-column
+     * panel, for one k block after another, so that the k block of the
+     * panel stays in L1 while every row block of the tile uses it.
+     *
+     * @param K Length of the shared dimension
+     * @param kc Length of a k block
+     * @param rowStart First row of the tile
+     * @param rowEnd First row past the tile
+     * @param colStart First column of the tile, a multiple of NR
+     * @param colEnd First column past the tile
+     * @param kernel Computes one block
+     */
+    static void forEachBlock(
+            final int K,
+            final int kc,
+            final int rowStart,
+            final int rowEnd,
+            final int colStart,
+            final int colEnd,
+            final BlockKernel kernel
+    ) {
+        for (int k0 = 0; k0 < K; k0 += kc) {
+            final int depth = Math.min(kc, K - k0);
+            for (int j = colStart; j < colEnd; j += NR) {
+                final int panelOffset = ((j / NR) * K + k0) * NR;
+                final int width = Math.min(NR, colEnd - j);
+                for (int i = rowStart; i < rowEnd; i += MR) {
+                    kernel.compute(i, Math.min(MR, rowEnd - i), j, width, k0, depth, panelOffset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set every element of a matrix with contiguous rows to zero.
+     *
+     * @param C Matrix to clear
+     */
+    static void fillZero(final DenseMatrix C) {
+        for (int i = 0; i < C.getRows(); i++) {
+            final int row = C.offset() + i * C.getRowStride();
+            Arrays.fill(C.data(), row, row + C.getCols(), 0.0);
+        }
+    }
+
+    /**
+     * Compute one tile of C sequentially.
+     *
+     * @param A Left operand, with contiguous rows
+     * @param packedB Right operand, packed by packB
+     * @param C Output matrix, with contiguous rows
+     * @param K Length of the shared dimension
+     * @param rowStart First row of the tile
+     * @param rowEnd First row past the tile
+     * @param colStart First column of the tile, a multiple of NR
+     * @param colEnd First column past the tile
+     * @param accumulate true to add the tile to C rather than store it
+     */
+    static void multiplyTile(
+            final DenseMatrix A,
+            final double[] packedB,
+            final DenseMatrix C,
+            final int K,
+            final int rowStart,
+            final int rowEnd,
+            final int colStart,
+            final int colEnd,
+            final boolean accumulate
+    ) {
+        final int aStride = A.getRowStride();
+        multiplyTile(A.data(), A.offset(), MR * aStride, aStride, 1, packedB, C, K,
+                rowStart, rowEnd, colStart, colEnd, accumulate);
+    }
+
+    /**
+     * Compute one tile of C sequentially from an A packed by packA.
+     *
+     * @param packedA Left operand, packed by packA
+     * @param packedB Right operand, packed by packB
+     * @param C Output matrix, with contiguous rows
+     * @param K Length of the shared dimension
+     * @param rowStart First row of the tile, a multiple of MR
+     * @param rowEnd First row past the tile
+     * @param colStart First column of the tile, a multiple of NR
+     * @param colEnd First column past the tile
+     */
+    static void multiplyPackedTile(
+            final double[] packedA,
+            final double[] packedB,
+            final DenseMatrix C,
+            final int K,
+            final int rowStart,
+            final int rowEnd,
+            final int colStart,
+            final int colEnd
+    ) {
+        multiplyTile(packedA, 0, K * MR, 1, MR, packedB, C, K, rowStart, rowEnd, colStart, colEnd, false);
+    }
+
+    /**
+     * Compute one tile of C sequentially, with A in either layout. Element
+     * (i, k) of A is at a[aOffset + (i / MR) * aPanelStep + (i % MR) *
+     * aRowStep + k * aKStep]: row-major storage steps by its row stride
+     * between rows and by 1 along k, packed storage by 1 between rows and by
+     * MR along k.
+     *
+     * @param a Storage of the left operand
+     * @param aOffset Index in a of element (0, 0)
+     * @param aPanelStep Distance in a between groups of MR rows
+     * @param aRowStep Distance in a between rows within a group
+     * @param aKStep Distance in a between consecutive k
+     * @param packedB Right operand, packed by packB
+     * @param C Output matrix, with contiguous rows
+     * @param K Length of the shared dimension
+     * @param rowStart First row of the tile, a multiple of MR
+     * @param rowEnd First row past the tile
+     * @param colStart First column of the tile, a multiple of NR
+     * @param colEnd First column past the tile
+     * @param accumulate true to add the tile to C rather than store it
+     */
+    private static void multiplyTile(
+            final double[] a,
+            final int aOffset,
+            final int aPanelStep,
+            final int aRowStep,
+            final int aKStep,
+            final double[] packedB,
+            final DenseMatrix C,
+            final int K,
+            final int rowStart,
+            final int rowEnd,
+            final int colStart,
+            final int colEnd,
+            final boolean accumulate
+    ) {
+        final double[] c = C.data();
+        final int cStride = C.getRowStride();
+        forEachBlock(K, KC, rowStart, rowEnd, colStart, colEnd, (i, height, j, width, k0, depth, panelOffset) -> {
+            final boolean overwrite = k0 == 0 && !accumulate;
+            final int cBlock = C.offset() + i * cStride + j;
+            if (height == MR) {
+                microKernel(a, aOffset + (i / MR) * aPanelStep + (i % MR) * aRowStep + k0 * aKStep, aRowStep,
+                        aKStep, packedB, panelOffset, depth, c, cBlock, cStride, width, overwrite);
+                return;
+            }
+            for (int r = i; r < i + height; r++) {
+                edgeKernel(a, aOffset + (r / MR) * aPanelStep + (r % MR) * aRowStep + k0 * aKStep, aKStep,
+                        packedB, panelOffset, depth, c, cBlock + (r - i) * cStride, width, overwrite);
+            }
+        });
+    }
+
+    /**
+     * Compute an MR x NR block of C over one k block.
+     *
+     * @param a Storage of the left operand
+     * @param aBlock Index in a of the block's first row at the first k
+     * @param aRowStep Distance in a between rows
+     * @param aKStep Distance in a between consecutive k
+     * @param packedB Right operand, packed by packB
+     * @param panelOffset Index of the first k of the block in the panel
+     * @param depth Length of the k block
+     * @param c Storage of the output matrix
+     * @param cBlock Index in c of the block's top-left element
+     * @param cStride Distance in c between rows
+     * @param width Number of columns to store, at most NR
+     * @param overwrite true to store the block, false to add it to C
+     */
+    private static void microKernel(
+            final double[] a,
+            final int aBlock,
+            final int aRowStep,
+            final int aKStep,
+            final double[] packedB,
+            final int panelOffset,
+            final int depth,
+            final double[] c,
+            final int cBlock,
+            final int cStride,
+            final int width,
+            final boolean overwrite
+    ) {
+        double c00 = 0;
+        double c01 = 0;
+        double c02 = 0;
+        double c03 = 0;
+        double c10 = 0;
+        double c11 = 0;
+        double c12 = 0;
+        double c13 = 0;
+        double c20 = 0;
+        double c21 = 0;
+        double c22 = 0;
+        double c23 = 0;
+        double c30 = 0;
+        double c31 = 0;
+        double c32 = 0;
+        double c33 = 0;
+
+        int b = panelOffset;
+        int x = aBlock;
+        for (int k = 0; k < depth; k++, b += NR, x += aKStep) {
+            final double b0 = packedB[b];
+            final double b1 = packedB[b + 1];
+            final double b2 = packedB[b + 2];
+            final double b3 = packedB[b + 3];
+            final double x0 = a[x];
+            final double x1 = a[x + aRowStep];
+            final double x2 = a[x + 2 * aRowStep];
+            final double x3 = a[x + 3 * aRowStep];
+            c00 += x0 * b0;
+            c01 += x0 * b1;
+            c02 += x0 * b2;
+            c03 += x0 * b3;
+            c10 += x1 * b0;
+            c11 += x1 * b1;
+            c12 += x1 * b2;
+            c13 += x1 * b3;
+            c20 += x2 * b0;
+            c21 += x2 * b1;
+            c22 += x2 * b2;
+            c23 += x2 * b3;
+            c30 += x3 * b0;
+            c31 += x3 * b1;
+            c32 += x3 * b2;
+            c33 += x3 * b3;
+        }
+
+        store(c, cBlock, width, overwrite, c00, c01, c02, c03);
+        store(c, cBlock + cStride, width, overwrite, c10, c11, c12, c13);
+        store(c, cBlock + 2 * cStride, width, overwrite, c20, c21, c22, c23);
+        store(c, cBlock + 3 * cStride, width, overwrite, c30, c31, c32, c33);
+    }
+
+    /**
+     * Compute a 1 x NR block of C over one k block, for rows left over at
+     * the bottom of a tile.
+     *
+     * @param a Storage of the left operand
+     * @param aRow Index in a of the row at the first k
+     * @param aKStep Distance in a between consecutive k
+     * @param packedB Right operand, packed by packB
+     * @param panelOffset Index of the first k of the block in the panel
+     * @param depth Length of the k block
+     * @param c Storage of the output matrix
+     * @param cBlock Index in c of the block's first element
+     * @param width Number of columns to store, at most NR
+     * @param overwrite true to store the block, false to add it to C
+     */
+    private static void edgeKernel(
+            final double[] a,
+            final int aRow,
+            final int aKStep,
+            final double[] packedB,
+            final int panelOffset,
+            final int depth,
+            final double[] c,
+            final int cBlock,
+            final int width,
+            final boolean overwrite
+    ) {
+        double c0 = 0;
+        double c1 = 0;
+        double c2 = 0;
+        double c3 = 0;
+        int b = panelOffset;
+        int ix = aRow;
+        for (int k = 0; k < depth; k++, b += NR, ix += aKStep) {
+            final double x = a[ix];
+            c0 += x * packedB[b];
+            c1 += x * packedB[b + 1];
+            c2 += x * packedB[b + 2];
+            c3 += x * packedB[b + 3];
+        }
+        store(c, cBlock, width, overwrite, c0, c1, c2, c3);
+    }
+
+    /**
+     * Store or accumulate up to NR consecutive values into C.
+     *
+     * @param c Storage of C
+     * @param j Index in c of the first element to write
+     * @param width Number of columns to write, at most NR
+     * @param overwrite true to store, false to add
+     * @param v0 Value for column j
+     * @param v1 Value for column j + 1
+     * @param v2 Value for column j + 2
+     * @param v3 Value for column j + 3
+     */
+    private static void store(
+            final double[] c,
+            final int j,
+            final int width,
+            final boolean overwrite,
+            final double v0,
+            final double v1,
+            final double v2,
+            final double v3
+    ) {
+        if (width == NR) {
+            if (overwrite) {
+                c[j] = v0;
+                c[j + 1] = v1;
+                c[j + 2] = v2;
+                c[j + 3] = v3;
+            } else {
+                c[j] += v0;
+                c[j + 1] += v1;
+                c[j + 2] += v2;
+                c[j + 3] += v3;
+            }
+            return;
+        }
+        final double[] values = {v0, v1, v2, v3};
+        for (int col = 0; col < width; col++) {
+            c[j + col] = overwrite ? values[col] : c[j + col] + values[col];
+        }
+    }
+}
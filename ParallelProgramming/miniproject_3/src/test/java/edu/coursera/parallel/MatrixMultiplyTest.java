@@ -1,6 +1,10 @@
 package edu.coursera.parallel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.TestCase;
 
@@ -129,4 +133,478 @@ public class MatrixMultiplyTest extends TestCase {
                 "least %fx faster, but it only achieved %fx speedup", minimalExpectedSpeedup, speedup);
         assertTrue(errMsg, speedup >= minimalExpectedSpeedup);
     }
+
+    /**
+     * Tests the tiled implementation against the reference on sizes that are
+     * and are not multiples of the tile and micro-kernel dimensions.
+     */
+    public void testParTiledMatrixMultiply() {
+        for (int N : new int[] {1, 3, 4, 67, 256, 301}) {
+            final double[][] A = createMatrix(N);
+            // A larger matrix from the same seed, so that B differs from A.
+            final double[][] B = createMatrix(N + 1);
+            final double[][] C = new double[N][N];
+            final double[][] refC = new double[N][N];
+            seqMatrixMultiply(A, B, refC, N);
+            MatrixMultiply.parTiledMatrixMultiply(A, B, C, N);
+            checkResult(refC, C, N);
+        }
+    }
+
+    /**
+     * Tests that back-to-back products of different, equally sized operands are each computed from their own
+     * inputs.
+     */
+    public void testParMatrixMultiplyDistinctInputs() {
+        final int N = 64;
+        final double[][] A = createMatrix(N);
+        final double[][] B = createMatrix(N + 1);
+        final double[][] C = new double[N][N];
+        final double[][] refC = new double[N][N];
+
+        seqMatrixMultiply(A, B, refC, N);
+        MatrixMultiply.parMatrixMultiply(A, B, C, N);
+        checkResult(refC, C, N);
+
+        seqMatrixMultiply(B, A, refC, N);
+        MatrixMultiply.parMatrixMultiply(B, A, C, N);
+        checkResult(refC, C, N);
+    }
+
+    /**
+     * Tests that the product cache tells equally sized operands and modified operands apart, and that cached
+     * products are not affected by writes to the output matrix.
+     */
+    public void testProductCacheFingerprintAndDeepCopy() {
+        final int N = 64;
+        final MatrixProductCache cache = new MatrixProductCache(1 << 20);
+        final double[][] A = createMatrix(N);
+        final double[][] B = createMatrix(N + 1);
+        final double[][] C = new double[N][N];
+        final double[][] refC = new double[N][N];
+
+        seqMatrixMultiply(A, B, refC, N);
+        cache.multiply(A, B, C, N);
+        checkResult(refC, C, N);
+        C[0][0] = -1;
+        cache.multiply(A, B, C, N);
+        checkResult(refC, C, N);
+        assertEquals(1, cache.getHits());
+
+        seqMatrixMultiply(B, A, refC, N);
+        cache.multiply(B, A, C, N);
+        checkResult(refC, C, N);
+        assertEquals(2, cache.getMisses());
+
+        A[N - 1][N - 1] += 1;
+        seqMatrixMultiply(A, B, refC, N);
+        cache.multiply(A, B, C, N);
+        checkResult(refC, C, N);
+        assertEquals(3, cache.getMisses());
+    }
+
+    /**
+     * Tests that version-stamped lookups hit until a version changes, and that the least recently used products
+     * are evicted once the byte budget is exceeded.
+     */
+    public void testProductCacheVersionAndEviction() {
+        final int N = 32;
+        final long productBytes = (long) N * N * Double.BYTES;
+        final MatrixProductCache cache = new MatrixProductCache(2 * productBytes);
+        final double[][] A = createMatrix(N);
+        final double[][] B = createMatrix(N);
+        final double[][] D = createMatrix(N);
+        final double[][] C = new double[N][N];
+
+        cache.multiply(A, 1L, B, 1L, C, N);
+        cache.multiply(A, 1L, B, 1L, C, N);
+        assertEquals(1, cache.getHits());
+        cache.multiply(A, 1L, B, 2L, C, N);
+        assertEquals(2, cache.getMisses());
+
+        cache.clear();
+        cache.multiply(A, 1L, B, 1L, C, N);
+        cache.multiply(B, 1L, D, 1L, C, N);
+        cache.multiply(A, 1L, B, 1L, C, N);
+        cache.multiply(D, 1L, A, 1L, C, N);
+        assertEquals(2, cache.size());
+        assertEquals(2 * productBytes, cache.getBytes());
+
+        final long missesBefore = cache.getMisses();
+        cache.multiply(A, 1L, B, 1L, C, N);
+        assertEquals(missesBefore, cache.getMisses());
+        cache.multiply(B, 1L, D, 1L, C, N);
+        assertEquals(missesBefore + 1, cache.getMisses());
+
+        final MatrixProductCache tiny = new MatrixProductCache(productBytes - 1);
+        tiny.multiply(A, B, C, N);
+        assertEquals(0, tiny.size());
+    }
+
+    /**
+     * Tests that sub-matrix and transposed views address the shared storage, and that a contiguous matrix is
+     * exposed as a buffer over the same array.
+     */
+    public void testDenseMatrixViews() {
+        final double[] data = new double[12];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        final DenseMatrix M = DenseMatrix.wrap(data, 3, 4);
+        assertEquals(6.0, M.get(1, 2));
+
+        final DenseMatrix block = M.view(1, 1, 2, 2);
+        assertEquals(5.0, block.get(0, 0));
+        assertEquals(10.0, block.get(1, 1));
+        assertFalse(block.isContiguous());
+        assertTrue(block.hasContiguousRows());
+
+        final DenseMatrix T = M.transpose();
+        assertEquals(4, T.getRows());
+        assertEquals(3, T.getCols());
+        assertEquals(M.get(2, 1), T.get(1, 2));
+        T.set(3, 0, -1);
+        assertEquals(-1.0, data[3]);
+
+        assertFalse(M.asDoubleBuffer().isDirect());
+        M.asDoubleBuffer().put(11, 42);
+        assertEquals(42.0, M.get(2, 3));
+        try {
+            block.asDoubleBuffer();
+            fail("A strided view is not contiguous");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            M.get(3, 0);
+            fail("Row 3 is out of bounds");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            DenseMatrix.wrap(data, 4, 4);
+            fail("12 elements cannot hold a 4x4 matrix");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Tests the flat-matrix kernels against the reference on rectangular operands, including transposed and
+     * sub-matrix views and an output view with non-unit column stride.
+     */
+    public void testDenseMatrixMultiply() {
+        final int M = 67;
+        final int K = 45;
+        final int N = 130;
+        final double[][] A = createMatrix(M + K);
+        final double[][] B = createMatrix(K + N);
+        final int size = Math.max(M, Math.max(K, N));
+        final double[][] a = new double[size][size];
+        final double[][] b = new double[size][size];
+        for (int i = 0; i < M; i++) {
+            System.arraycopy(A[i], 0, a[i], 0, K);
+        }
+        for (int k = 0; k < K; k++) {
+            System.arraycopy(B[k], 0, b[k], 0, N);
+        }
+        final double[][] ref = new double[size][size];
+        seqMatrixMultiply(a, b, ref, size);
+
+        // A as a sub-matrix view, B as the transpose of its transpose.
+        final DenseMatrix denseA = DenseMatrix.copyOf(A, M + K, M + K).view(0, 0, M, K);
+        final DenseMatrix denseB = DenseMatrix.copyOf(B, K + N, K + N).view(0, 0, K, N).copy().transpose()
+                .copy().transpose();
+        assertFalse(denseB.hasContiguousRows());
+
+        final DenseMatrix[] outputs = {new DenseMatrix(M, N), new DenseMatrix(M, N),
+            new DenseMatrix(N, M).transpose()};
+        MatrixMultiply.seqMatrixMultiply(denseA, denseB, outputs[0]);
+        MatrixMultiply.parMatrixMultiply(denseA, denseB, outputs[1]);
+        MatrixMultiply.parTiledMatrixMultiply(denseA, denseB, outputs[2]);
+        for (DenseMatrix C : outputs) {
+            for (int i = 0; i < M; i++) {
+                for (int j = 0; j < N; j++) {
+                    assertEquals("Error detected on cell (" + i + ", " + j + ")", ref[i][j], C.get(i, j));
+                }
+            }
+        }
+
+        try {
+            MatrixMultiply.parTiledMatrixMultiply(denseA, denseB, new DenseMatrix(N, M));
+            fail("A " + N + "x" + M + " output cannot hold the product");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            MatrixMultiply.seqMatrixMultiply(denseA, denseA.transpose(), denseA.view(0, 0, M, M - 30));
+            fail("The output aliases an input");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Tests the recursive multiply with and without Strassen steps against the reference, on sizes that split
+     * evenly, unevenly and rectangularly, with strided operands and output.
+     */
+    public void testParRecursiveMatrixMultiply() {
+        for (int N : new int[] {1, 67, 128, 301}) {
+            final double[][] A = createMatrix(N);
+            final double[][] B = createMatrix(N + 1);
+            final double[][] C = new double[N][N];
+            final double[][] refC = new double[N][N];
+            seqMatrixMultiply(A, B, refC, N);
+            MatrixMultiply.parRecursiveMatrixMultiply(A, B, C, N, MatrixMultiply.NO_STRASSEN);
+            checkResult(refC, C, N);
+            MatrixMultiply.parRecursiveMatrixMultiply(A, B, C, N, 64);
+            checkResult(refC, C, N);
+        }
+
+        final int M = 90;
+        final int K = 41;
+        final int N = 70;
+        final DenseMatrix A = DenseMatrix.copyOf(createMatrix(M), M, K);
+        final DenseMatrix B = DenseMatrix.copyOf(createMatrix(N), N, K).transpose();
+        final DenseMatrix ref = new DenseMatrix(M, N);
+        MatrixMultiply.seqMatrixMultiply(A, B, ref);
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int cutoff : new int[] {MatrixMultiply.NO_STRASSEN, 16}) {
+                final DenseMatrix C = new DenseMatrix(N, M).transpose();
+                MatrixMultiply.parRecursiveMatrixMultiply(A, B, C, 8, cutoff, pool);
+                for (int i = 0; i < M; i++) {
+                    for (int j = 0; j < N; j++) {
+                        assertEquals("Error detected on cell (" + i + ", " + j + ")", ref.get(i, j), C.get(i, j));
+                    }
+                }
+            }
+            // Square and a power of two, so Strassen steps recurse down to the leaves.
+            final DenseMatrix S = DenseMatrix.copyOf(createMatrix(64), 64, 64);
+            final DenseMatrix T = DenseMatrix.copyOf(createMatrix(65), 64, 64);
+            final DenseMatrix expected = new DenseMatrix(64, 64);
+            final DenseMatrix actual = new DenseMatrix(64, 64);
+            MatrixMultiply.seqMatrixMultiply(S, T, expected);
+            MatrixMultiply.parRecursiveMatrixMultiply(S, T, actual, 4, 8, pool);
+            for (int i = 0; i < 64; i++) {
+                for (int j = 0; j < 64; j++) {
+                    assertEquals(expected.get(i, j), actual.get(i, j));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Create a sparse matrix with small integer values, a few percent of them non-zero, plus one dense row and
+     * a run of empty rows so that partitions by work and by row count differ.
+     */
+    private DenseMatrix createSparseMatrix(final int rows, final int cols, final int seed) {
+        final DenseMatrix M = new DenseMatrix(rows, cols);
+        final Random rand = new Random(seed);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (i == 3 || (i > rows / 2 + 10 && rand.nextInt(50) == 0)) {
+                    M.set(i, j, rand.nextInt(19) - 9);
+                }
+            }
+        }
+        return M;
+    }
+
+    /**
+     * Tests sparse matrix-vector, sparse-dense and sparse-sparse products against dense references.
+     */
+    public void testSparseMatrixMultiply() {
+        final int M = 230;
+        final int K = 150;
+        final int N = 97;
+        final DenseMatrix denseA = createSparseMatrix(M, K, 1);
+        final DenseMatrix denseB = createSparseMatrix(K, N, 2);
+        final CsrMatrix A = CsrMatrix.fromDense(denseA);
+        final CsrMatrix B = CsrMatrix.fromDense(denseB);
+        assertTrue(A.getNonZeros() < M * K / 10);
+        assertEquals(denseA.get(3, 7), A.get(3, 7));
+
+        final double[] x = new double[K];
+        for (int k = 0; k < K; k++) {
+            x[k] = k % 7 - 3;
+        }
+        final double[] y = new double[M];
+        MatrixMultiply.parSparseMatrixVectorMultiply(A, x, y);
+        for (int i = 0; i < M; i++) {
+            double expected = 0.0;
+            for (int k = 0; k < K; k++) {
+                expected += denseA.get(i, k) * x[k];
+            }
+            assertEquals("Error detected on row " + i, expected, y[i]);
+        }
+
+        final DenseMatrix expected = new DenseMatrix(M, N);
+        MatrixMultiply.seqMatrixMultiply(denseA, denseB, expected);
+        final DenseMatrix C = new DenseMatrix(N, M).transpose();
+        MatrixMultiply.parSparseMatrixMultiply(A, denseB, C);
+        final DenseMatrix sparseProduct = MatrixMultiply.parSparseMatrixMultiply(A, B).toDense();
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                final String msg = "Error detected on cell (" + i + ", " + j + ")";
+                assertEquals(msg, expected.get(i, j), C.get(i, j));
+                assertEquals(msg, expected.get(i, j), sparseProduct.get(i, j));
+            }
+        }
+
+        // Spreading B's columns over a much wider matrix moves each product
+        // column without changing it, and makes the accumulators hashed.
+        final int wideN = 1 << 22;
+        final int spread = wideN / N;
+        final int[] wideColIdx = B.colIdx().clone();
+        for (int q = 0; q < wideColIdx.length; q++) {
+            wideColIdx[q] *= spread;
+        }
+        final CsrMatrix wideB = new CsrMatrix(K, wideN, B.rowPtr(), wideColIdx, B.values());
+        final CsrMatrix wideProduct = MatrixMultiply.parSparseMatrixMultiply(A, wideB);
+        assertEquals(wideN, wideProduct.getCols());
+        int nonZeros = 0;
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                assertEquals("Error detected on cell (" + i + ", " + j + ")",
+                        sparseProduct.get(i, j), wideProduct.get(i, j * spread));
+                nonZeros += sparseProduct.get(i, j) != 0.0 ? 1 : 0;
+            }
+        }
+        assertEquals(nonZeros, wideProduct.getNonZeros());
+
+        try {
+            new CsrMatrix(2, 3, new int[] {0, 2, 3}, new int[] {1, 0, 2}, new double[] {1, 1, 1});
+            fail("Columns within a row must be increasing");
+        } catch (IllegalArgumentException unordered) {
+        }
+    }
+
+    /**
+     * Tests that the tiled and batched kernels survive many short products issued back to back from inside a
+     * ForkJoinPool, the load under which PCDP's finish scopes were seen to hang.
+     */
+    public void testShortProductsBackToBack() {
+        final int N = 8;
+        final DenseMatrix A = DenseMatrix.copyOf(createMatrix(N), N, N);
+        final DenseMatrix B = DenseMatrix.copyOf(createMatrix(N), N, N);
+        final DenseMatrix expected = new DenseMatrix(N, N);
+        MatrixMultiply.seqMatrixMultiply(A, B, expected);
+        final BatchedMatrixMultiply batched = new BatchedMatrixMultiply(A);
+        final DenseMatrix tiledC = new DenseMatrix(N, N);
+        final DenseMatrix batchedC = new DenseMatrix(N, N);
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            pool.submit(() -> {
+                for (int r = 0; r < 100000; r++) {
+                    MatrixMultiply.parTiledMatrixMultiply(A, B, tiledC);
+                    batched.multiply(B, batchedC);
+                }
+            }).join();
+        } finally {
+            pool.shutdown();
+        }
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                assertEquals(expected.get(i, j), tiledC.get(i, j));
+                assertEquals(expected.get(i, j), batchedC.get(i, j));
+            }
+        }
+        assertEquals(100000, batched.getProducts());
+    }
+
+    /**
+     * Tests that a batch of right operands of different widths multiplied by one packed left operand matches the
+     * reference, and that the reuse statistics count every product.
+     */
+    public void testBatchedMatrixMultiply() {
+        final int M = 70;
+        final int K = 45;
+        final DenseMatrix A = DenseMatrix.copyOf(createMatrix(M), M, K);
+        final BatchedMatrixMultiply batched = new BatchedMatrixMultiply(A);
+        final List<DenseMatrix> Bs = new ArrayList<>();
+        final List<DenseMatrix> Cs = new ArrayList<>();
+        for (int N : new int[] {1, 33, 300, 4}) {
+            Bs.add(DenseMatrix.copyOf(createMatrix(Math.max(K, N) + N), K, N));
+            Cs.add(N == 4 ? new DenseMatrix(N, M).transpose() : new DenseMatrix(M, N));
+        }
+        batched.multiply(Bs, Cs);
+        batched.multiply(Bs.get(1), Cs.get(1));
+        for (int b = 0; b < Bs.size(); b++) {
+            final DenseMatrix expected = new DenseMatrix(M, Bs.get(b).getCols());
+            MatrixMultiply.seqMatrixMultiply(A, Bs.get(b), expected);
+            for (int i = 0; i < M; i++) {
+                for (int j = 0; j < expected.getCols(); j++) {
+                    assertEquals("Error detected in product " + b + " on cell (" + i + ", " + j + ")",
+                            expected.get(i, j), Cs.get(b).get(i, j));
+                }
+            }
+        }
+        assertEquals(5, batched.getProducts());
+        assertEquals(2, batched.getBatches());
+        assertEquals(2, batched.getStages());
+        assertEquals(72L * K * Double.BYTES, batched.getPackedBytes());
+        assertEquals(4 * batched.getPackedBytes(), batched.getSavedPackBytes());
+
+        try {
+            batched.multiply(Bs.get(0), new DenseMatrix(M, 2));
+            fail("The output has the wrong width");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Tests the single precision kernels against a double product of the same float inputs: with double
+     * accumulation every element is the correctly ordered sum rounded once, and with float accumulation the normwise
+     * error stays within the bound for a long shared dimension.
+     */
+    public void testFloatMatrixMultiply() {
+        final int M = 37;
+        final int K = 2000;
+        final int N = 45;
+        final Random random = new Random(314);
+        final float[] A = new float[M * K];
+        final float[] B = new float[K * N];
+        for (int i = 0; i < A.length; i++) {
+            A[i] = random.nextFloat() * 2 - 1;
+        }
+        for (int i = 0; i < B.length; i++) {
+            B[i] = random.nextFloat() * 2 - 1;
+        }
+        final double[] ref = new double[M * N];
+        for (int i = 0; i < M; i++) {
+            for (int k = 0; k < K; k++) {
+                for (int j = 0; j < N; j++) {
+                    ref[i * N + j] += (double) A[i * K + k] * B[k * N + j];
+                }
+            }
+        }
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            for (boolean doubleAccumulation : new boolean[] {true, false}) {
+                final float[] C = new float[M * N];
+                Arrays.fill(C, Float.NaN);
+                if (parallel) {
+                    FloatMatrixMultiply.parMatrixMultiply(A, B, C, M, K, N, doubleAccumulation);
+                } else {
+                    FloatMatrixMultiply.seqMatrixMultiply(A, B, C, M, K, N, doubleAccumulation);
+                }
+                double error = 0.0;
+                double norm = 0.0;
+                for (int i = 0; i < ref.length; i++) {
+                    if (doubleAccumulation) {
+                        assertEquals("Error detected on cell " + i + " with parallel=" + parallel,
+                                (float) ref[i], C[i]);
+                    }
+                    error += (C[i] - ref[i]) * (C[i] - ref[i]);
+                    norm += ref[i] * ref[i];
+                }
+                assertTrue("Relative error " + Math.sqrt(error / norm) + " with parallel=" + parallel,
+                        Math.sqrt(error / norm) < 1e-5);
+            }
+        }
+
+        try {
+            FloatMatrixMultiply.parMatrixMultiply(A, B, new float[M * N - 1], M, K, N, false);
+            fail("The output is too short");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
 }
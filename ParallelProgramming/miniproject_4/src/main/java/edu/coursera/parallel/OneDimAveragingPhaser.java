@@ -1,6 +1,8 @@
 package edu.coursera.parallel;
 
 import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Wrapper class for implementing one-dimensional iterative averaging using
@@ -8,6 +10,17 @@ import java.util.concurrent.Phaser;
  */
 @SuppressWarnings("WeakerAccess")
 public final class OneDimAveragingPhaser {
+    /**
+     * Checks of a neighbour's progress counter before parking.
+     */
+    private static final int SPINS = 1 << 10;
+
+    /**
+     * Slots per task in the point-to-point state array, so that the
+     * counters of different tasks sit on different cache lines.
+     */
+    private static final int PAD = 16;
+
     /**
      * Default constructor.
      */
@@ -167,4 +180,370 @@ public final class OneDimAveragingPhaser {
             }
         }
     }
+
+    /**
+     * Sequential in-place red-black implementation of one-dimensional
+     * iterative averaging. Each iteration first averages the odd (red)
+     * points from their even (black) neighbours and then the black points
+     * from the new red ones, in a single pass that updates black point j - 1
+     * right after red point j. This is not the same sequence of values as
+     * runSequential, but it converges to the same fixed point, the straight
+     * line between myVal[0] and myVal[n + 1], in about half as many
+     * iterations, and needs one array instead of two.
+     *
+     * @param iterations The number of iterations to run
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem, updated in place
+     * @param n The size of this problem
+     */
+    public static void runSequentialRedBlack(
+            final int iterations,
+            final double[] myVal,
+            final int n
+    ) {
+        for (int iter = 0; iter < iterations; iter++) {
+            redBlackSweep(myVal, 1, n);
+        }
+    }
+
+    /**
+     * A parallel in-place red-black implementation of one-dimensional
+     * iterative averaging, computing the same values as runSequentialRedBlack.
+     * Chunks have an even size, so each starts on a red point and every
+     * chunk but the last ends on a black one. Only two points of a chunk
+     * depend on its neighbours: its first red point reads the left
+     * neighbour's last black point, and its last black point reads the right
+     * neighbour's first red point. Each iteration therefore has two fuzzy
+     * phases: a task updates its first red point and arrives, sweeps the rest
+     * of its chunk, waits for the phase, updates its last black point and
+     * arrives again, waiting for that phase only before the next iteration's
+     * first red point.
+     *
+     * @param iterations The number of iterations to run
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem, updated in place
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     */
+    public static void runParallelRedBlack(
+            final int iterations,
+            final double[] myVal,
+            final int n,
+            final int tasks
+    ) {
+        Phaser ph = new Phaser(0);
+        ph.bulkRegister(tasks);
+
+        Thread[] threads = new Thread[tasks];
+
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> {
+                final int chunkSize = ((n + tasks - 1) / tasks + 1) & ~1;
+                final int left = (i * chunkSize) + 1;
+                int right = (left + chunkSize) - 1;
+                if (right > n) right = n;
+                final boolean endsBlack = left <= right && (right - left) % 2 == 1;
+
+                int blackPhase = -1;
+                for (int iter = 0; iter < iterations; iter++) {
+                    if (blackPhase >= 0) {
+                        ph.awaitAdvance(blackPhase);
+                    }
+                    if (left <= right) {
+                        myVal[left] = (myVal[left - 1] + myVal[left + 1]) / 2.0;
+                    }
+
+                    int redPhase = ph.arrive();
+
+                    if (left <= right) {
+                        redBlackSweep(myVal, left + 2, endsBlack ? right - 1 : right);
+                    }
+
+                    ph.awaitAdvance(redPhase);
+
+                    if (endsBlack) {
+                        myVal[right] = (myVal[right - 1] + myVal[right + 1]) / 2.0;
+                    }
+
+                    blackPhase = ph.arrive();
+                }
+            });
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A parallel temporally blocked implementation of one-dimensional
+     * iterative averaging, computing the same values as runSequential in
+     * both arrays. Each task copies its chunk plus k ghost cells on either
+     * side into two private arrays and advances k iterations on them,
+     * recomputing one fewer ghost cell on each side per iteration, so that
+     * after k iterations its own chunk is exact. It then publishes the k
+     * cells at each end of its chunk, waits at the phaser, and reads its
+     * neighbours' cells into its ghost cells. The tasks synchronize once
+     * every k iterations instead of once per iteration, at the cost of
+     * recomputing about k * k ghost cells per block. The published cells
+     * alternate between myNew and myVal, so that a block never overwrites
+     * cells a slow neighbour may still be reading.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     * @param k The number of iterations between exchanges, capped at the
+     *        chunk size
+     */
+    public static void runParallelTemporalBlocking(
+            final int iterations,
+            final double[] myNew,
+            final double[] myVal,
+            final int n,
+            final int tasks,
+            final int k
+    ) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Need at least one iteration between exchanges, got " + k);
+        }
+        Phaser ph = new Phaser(0);
+        ph.bulkRegister(tasks);
+
+        Thread[] threads = new Thread[tasks];
+
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> {
+                final int chunkSize = (n + tasks - 1) / tasks;
+                final int left = (i * chunkSize) + 1;
+                int right = (left + chunkSize) - 1;
+                if (right > n) right = n;
+                final int halo = Math.max(1, Math.min(k, chunkSize));
+
+                final int lo = Math.max(0, left - halo);
+                final int hi = Math.min(n + 1, right + halo);
+                final int base = left - halo;
+                double[] curr = new double[Math.max(0, hi - base + 1)];
+                double[] next = new double[curr.length];
+                if (left <= right) {
+                    System.arraycopy(myVal, lo, curr, lo - base, hi - lo + 1);
+                }
+
+                for (int start = 0; start < iterations; start += halo) {
+                    final int steps = Math.min(halo, iterations - start);
+                    if (left <= right) {
+                        for (int step = 1; step <= steps; step++) {
+                            final double[] prev = (start + step - 1) % 2 == 0 ? myVal : myNew;
+                            if (lo == 0) {
+                                curr[-base] = prev[0];
+                            }
+                            if (hi == n + 1) {
+                                curr[n + 1 - base] = prev[n + 1];
+                            }
+                            final int from = Math.max(1, left - (steps - step));
+                            final int to = Math.min(n, right + (steps - step));
+                            for (int j = from; j <= to; j++) {
+                                next[j - base] = (curr[j - 1 - base] + curr[j + 1 - base]) / 2.0;
+                            }
+                            double[] temp = next;
+                            next = curr;
+                            curr = temp;
+                        }
+                    }
+
+                    if (start + steps < iterations) {
+                        final double[] exchange = (start / halo) % 2 == 0 ? myNew : myVal;
+                        if (left <= right) {
+                            final int edge = Math.min(halo, right - left + 1);
+                            System.arraycopy(curr, left - base, exchange, left, edge);
+                            System.arraycopy(curr, right - edge + 1 - base, exchange, right - edge + 1, edge);
+                        }
+                        ph.arriveAndAwaitAdvance();
+                        if (left <= right) {
+                            System.arraycopy(exchange, Math.max(1, lo), curr, Math.max(1, lo) - base,
+                                    left - Math.max(1, lo));
+                            System.arraycopy(exchange, right + 1, curr, right + 1 - base,
+                                    Math.min(n, hi) - right);
+                        }
+                    }
+                }
+
+                if (iterations > 0) {
+                    ph.arriveAndAwaitAdvance();
+                    if (left <= right) {
+                        final double[] last = iterations % 2 == 0 ? myVal : myNew;
+                        final double[] previous = iterations % 2 == 0 ? myNew : myVal;
+                        System.arraycopy(curr, left - base, last, left, right - left + 1);
+                        System.arraycopy(next, left - base, previous, left, right - left + 1);
+                    }
+                }
+            });
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging in
+     * which each task synchronizes only with its left and right neighbours,
+     * computing the same values as runSequential. Each task publishes the
+     * number of iterations it has completed in a volatile counter. In every
+     * iteration it first updates the interior of its chunk, which depends
+     * on nothing but its own cells, then waits until both neighbours have
+     * completed the previous iteration, updates its two edge cells and
+     * publishes its counter. A straggler therefore only delays the chunks
+     * next to it, and tasks further away may run several iterations ahead.
+     * Waiting tasks spin on the counter for a while and then park until a
+     * neighbour publishes.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     */
+    public static void runParallelPointToPoint(
+            final int iterations,
+            final double[] myNew,
+            final double[] myVal,
+            final int n,
+            final int tasks
+    ) {
+        final AtomicIntegerArray state = new AtomicIntegerArray(tasks * PAD);
+
+        Thread[] threads = new Thread[tasks];
+
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> {
+                double[] threadPrivateMyVal = myVal;
+                double[] threadPrivateMyNew = myNew;
+
+                final int chunkSize = (n + tasks - 1) / tasks;
+                final int left = (i * chunkSize) + 1;
+                int right = (left + chunkSize) - 1;
+                if (right > n) right = n;
+
+                for (int iter = 0; iter < iterations; iter++) {
+                    for (int j = left + 1; j <= right - 1; j++) {
+                        threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1] + threadPrivateMyVal[j + 1]) / 2.0;
+                    }
+
+                    if (i > 0) {
+                        awaitNeighbour(state, i, i - 1, iter);
+                    }
+                    if (i < tasks - 1) {
+                        awaitNeighbour(state, i, i + 1, iter);
+                    }
+                    if (left <= right) {
+                        threadPrivateMyNew[left] = (threadPrivateMyVal[left - 1] + threadPrivateMyVal[left + 1]) / 2.0;
+                        threadPrivateMyNew[right] = (threadPrivateMyVal[right - 1]
+                            + threadPrivateMyVal[right + 1]) / 2.0;
+                    }
+
+                    state.set(i * PAD, iter + 1);
+                    if (i > 0 && state.get((i - 1) * PAD + 1) != 0) {
+                        LockSupport.unpark(threads[i - 1]);
+                    }
+                    if (i < tasks - 1 && state.get((i + 1) * PAD + 1) != 0) {
+                        LockSupport.unpark(threads[i + 1]);
+                    }
+
+                    double[] temp = threadPrivateMyNew;
+                    threadPrivateMyNew = threadPrivateMyVal;
+                    threadPrivateMyVal = temp;
+                }
+            });
+        }
+        for (int ii = 0; ii < tasks; ii++) {
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Wait until a neighbour has completed a number of iterations, spinning
+     * on its counter and then parking. The waiting flag is raised before
+     * the last check of the counter and the neighbour checks the flag after
+     * publishing, so either this task sees the new count or the neighbour
+     * unparks it.
+     *
+     * @param state Progress counter and waiting flag of every task
+     * @param self The waiting task
+     * @param neighbour The task waited for
+     * @param completed The number of iterations to wait for
+     */
+    private static void awaitNeighbour(
+            final AtomicIntegerArray state,
+            final int self,
+            final int neighbour,
+            final int completed
+    ) {
+        int spins = 0;
+        while (state.get(neighbour * PAD) < completed) {
+            if (spins < SPINS) {
+                spins++;
+                continue;
+            }
+            state.set(self * PAD + 1, 1);
+            if (state.get(neighbour * PAD) < completed) {
+                LockSupport.park(state);
+            }
+            state.set(self * PAD + 1, 0);
+        }
+    }
+
+    /**
+     * One fused red-black pass: for every red point j from first to last,
+     * update j and then the black point j - 1 before it. When last is even,
+     * the black point last is updated too, after the red point last - 1.
+     * Red points read their black neighbours before either is updated, and
+     * black points read the red points updated by this pass.
+     *
+     * @param val The array updated in place
+     * @param first The first red (odd) point to update
+     * @param last The last point to update
+     */
+    private static void redBlackSweep(
+            final double[] val,
+            final int first,
+            final int last
+    ) {
+        for (int j = first; j <= last; j += 2) {
+            val[j] = (val[j - 1] + val[j + 1]) / 2.0;
+            if (j > 1) {
+                val[j - 1] = (val[j - 2] + val[j]) / 2.0;
+            }
+        }
+        if (last >= first && last % 2 == 0) {
+            val[last] = (val[last - 1] + val[last + 1]) / 2.0;
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package edu.coursera.parallel;
 
+import java.util.Random;
 import java.util.concurrent.Phaser;
 
 import junit.framework.TestCase;
@@ -144,4 +145,93 @@ public class OneDimAveragingPhaserTest extends TestCase {
                 "run %fx faster than the barrier implementation, but it only achieved %fx speedup", expected, speedup);
         assertTrue(errMsg, speedup >= expected);
     }
+
+    private double[] createRandomArray(final int N, final long seed) {
+        final Random random = new Random(seed);
+        final double[] input = new double[N + 2];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = random.nextDouble();
+        }
+        return input;
+    }
+
+    /**
+     * Tests that the parallel red-black implementation computes exactly the values of the sequential one, for sizes
+     * that do not split evenly and for more tasks than chunks.
+     */
+    public void testParallelRedBlack() {
+        for (int N : new int[] {0, 1, 2, 7, 64, 1001}) {
+            for (int ntasks : new int[] {1, 2, 3, 8, 40}) {
+                final double[] ref = createRandomArray(N, N);
+                final double[] output = createRandomArray(N, N);
+                OneDimAveragingPhaser.runSequentialRedBlack(101, ref, N);
+                OneDimAveragingPhaser.runParallelRedBlack(101, output, N, ntasks);
+                checkResult(ref, output);
+            }
+        }
+    }
+
+    /**
+     * Tests that the red-black and the two-array implementations converge to the same fixed point, the straight line
+     * between the boundary values.
+     */
+    public void testRedBlackFixedPoint() {
+        final int N = 30;
+        final int niterations = 10000;
+        final double[] myNew = createRandomArray(N, 42);
+        final double[] myVal = createRandomArray(N, 42);
+        final double[] inPlace = createRandomArray(N, 42);
+        runSequential(niterations, myNew, myVal, N);
+        OneDimAveragingPhaser.runParallelRedBlack(niterations, inPlace, N, 4);
+        for (int i = 0; i <= N + 1; i++) {
+            final double expected = myVal[0] + (myVal[N + 1] - myVal[0]) * i / (N + 1);
+            assertEquals("Mismatch on two-array output at element " + i, expected, myVal[i], 1e-9);
+            assertEquals("Mismatch on red-black output at element " + i, expected, inPlace[i], 1e-9);
+        }
+    }
+
+    /**
+     * Tests that the temporally blocked implementation leaves both arrays exactly as the sequential one does, including
+     * when the two arrays start with different boundary values, for block lengths that do not divide the iteration
+     * count or exceed the chunk size.
+     */
+    public void testParallelTemporalBlocking() {
+        for (int N : new int[] {0, 1, 7, 64, 1001}) {
+            for (int ntasks : new int[] {1, 3, 8, 40}) {
+                for (int k : new int[] {1, 2, 5, 16, 1000}) {
+                    for (int niterations : new int[] {0, 1, 37, 100}) {
+                        final double[] myNew = createRandomArray(N, N);
+                        final double[] myVal = createRandomArray(N, N + 1);
+                        final double[] myNewRef = createRandomArray(N, N);
+                        final double[] myValRef = createRandomArray(N, N + 1);
+                        runSequential(niterations, myNewRef, myValRef, N);
+                        OneDimAveragingPhaser.runParallelTemporalBlocking(niterations, myNew, myVal, N, ntasks, k);
+                        checkResult(myNewRef, myNew);
+                        checkResult(myValRef, myVal);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that the point-to-point implementation leaves both arrays exactly as the sequential one does, for more tasks
+     * than cores and for more tasks than points.
+     */
+    public void testParallelPointToPoint() {
+        for (int N : new int[] {0, 1, 7, 64, 1001}) {
+            for (int ntasks : new int[] {1, 3, 8, 64, 100}) {
+                for (int niterations : new int[] {0, 1, 37, 500}) {
+                    final double[] myNew = createRandomArray(N, N);
+                    final double[] myVal = createRandomArray(N, N + 1);
+                    final double[] myNewRef = createRandomArray(N, N);
+                    final double[] myValRef = createRandomArray(N, N + 1);
+                    runSequential(niterations, myNewRef, myValRef, N);
+                    OneDimAveragingPhaser.runParallelPointToPoint(niterations, myNew, myVal, N, ntasks);
+                    checkResult(myNewRef, myNew);
+                    checkResult(myValRef, myVal);
+                }
+            }
+        }
+    }
 }